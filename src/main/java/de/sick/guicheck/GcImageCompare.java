@@ -0,0 +1,425 @@
+// Copyright 2014 SICK AG. All rights reserved.
+package de.sick.guicheck;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Compares captured images against golden images. Two pixels are equal if every channel differs at most by the channel
+ * tolerance. Ignore regions are skipped completely. With anti-aliasing tolerance a differing pixel is accepted if its
+ * color is found within the tolerance in the 3x3 neighborhood of the pixel in the other image, which covers edges moved
+ * by less than a pixel.
+ * <p>
+ * An exact comparison, i.e. without any tolerance or ignore region, rejects images whose difference hashes are far
+ * apart without a pixel diff. Otherwise the rows are compared in parallel and the comparison stops as soon as more
+ * pixels differ than allowed.
+ *
+ * <pre>
+ * new GcImageCompare()
+ *     .channelTolerance(8)
+ *     .antiAliasing(true)
+ *     .ignore(0, 0, 200, 20)
+ *     .assertMatches(golden, pixels, width, height);
+ * </pre>
+ *
+ * @author agent (created)
+ */
+public final class GcImageCompare
+{
+    /**
+     * The result of a comparison.
+     */
+    public static final class Result
+    {
+        private final int m_differingPixels;
+        private final int m_hashDistance;
+        private final boolean m_matches;
+
+        Result(int differingPixels, int hashDistance, boolean matches)
+        {
+            m_differingPixels = differingPixels;
+            m_hashDistance = hashDistance;
+            m_matches = matches;
+        }
+
+        public boolean matches()
+        {
+            return m_matches;
+        }
+
+        /**
+         * @return The number of differing pixels found before the comparison stopped, <code>-1</code> if the images
+         *         were rejected by their difference hashes or their sizes.
+         */
+        public int getDifferingPixels()
+        {
+            return m_differingPixels;
+        }
+
+        /**
+         * @return The number of different bits of the difference hashes of both images.
+         */
+        public int getHashDistance()
+        {
+            return m_hashDistance;
+        }
+    }
+
+    /**
+     * The images are rejected without pixel diff if more bits of their 64 bit difference hashes differ. Only used for
+     * exact comparisons: images with equal pixels have equal hashes, so the rejection cannot change the result.
+     */
+    private static final int HASH_REJECT_DISTANCE = 16;
+
+    /**
+     * The number of rows compared by one task.
+     */
+    private static final int ROWS_PER_TASK = 16;
+
+    private static ForkJoinPool ms_pool;
+
+    private int m_channelTolerance;
+    private boolean m_antiAliasing;
+    private int m_maxDifferingPixels;
+    private final List<Rectangle> m_ignored = new ArrayList<Rectangle>();
+
+    /**
+     * @param tolerance The maximum difference per color channel and alpha of equal pixels, 0 to 255.
+     */
+    public GcImageCompare channelTolerance(int tolerance)
+    {
+        m_channelTolerance = tolerance;
+        return this;
+    }
+
+    /**
+     * Accept pixels which differ because an edge is anti-aliased differently.
+     */
+    public GcImageCompare antiAliasing(boolean tolerant)
+    {
+        m_antiAliasing = tolerant;
+        return this;
+    }
+
+    /**
+     * @param pixels The number of pixels allowed to differ, the default is 0.
+     */
+    public GcImageCompare maxDifferingPixels(int pixels)
+    {
+        m_maxDifferingPixels = pixels;
+        return this;
+    }
+
+    /**
+     * Ignore the given region of the images.
+     */
+    public GcImageCompare ignore(int x, int y, int width, int height)
+    {
+        m_ignored.add(new Rectangle(x, y, width, height));
+        return this;
+    }
+
+    /**
+     * Compare the given images.
+     *
+     * @param expected ARGB pixels line by line.
+     * @param actual ARGB pixels line by line.
+     */
+    public Result compare(int[] expected, int expectedWidth, int[] actual, int actualWidth)
+    {
+        if (expectedWidth != actualWidth || expected.length != actual.length)
+        {
+            return new Result(-1, 64, false);
+        }
+        if (expected.length == 0)
+        {
+            return new Result(0, 0, true);
+        }
+
+        final int l_height = expected.length / expectedWidth;
+
+        final int l_hashDistance = Long.bitCount(differenceHash(expected, expectedWidth, l_height) ^ differenceHash(actual, actualWidth, l_height));
+        if (l_hashDistance > HASH_REJECT_DISTANCE && isExact())
+        {
+            return new Result(-1, l_hashDistance, false);
+        }
+
+        final AtomicInteger l_differing = new AtomicInteger();
+        getPool().invoke(new DiffTask(expected, actual, expectedWidth, 0, l_height, l_differing));
+        final int l_count = l_differing.get();
+        return new Result(l_count, l_hashDistance, l_count <= m_maxDifferingPixels);
+    }
+
+    /**
+     * @return <code>true</code> if every pixel has to match exactly.
+     */
+    private boolean isExact()
+    {
+        return m_channelTolerance == 0 && !m_antiAliasing && m_maxDifferingPixels == 0 && m_ignored.isEmpty();
+    }
+
+    /**
+     * Compare the given image with the golden image. If the golden image does not exist yet, it is created from the
+     * given image. On failure the image and a heat map of the differences are written next to the golden image. All
+     * files are written before this method returns, so the next comparison can read the golden image.
+     *
+     * @param pixels ARGB pixels line by line.
+     * @throws GcAssertException Thrown if the images do not match.
+     * @throws GcException Thrown if an image cannot be read or written.
+     */
+    public void assertMatches(File golden, int[] pixels, int width, int height)
+    {
+        if (!golden.exists())
+        {
+            write(toImage(pixels, width, height), golden);
+            System.out.println("Golden image created: " + golden.getAbsolutePath());
+            return;
+        }
+
+        final BufferedImage l_golden;
+        try
+        {
+            l_golden = ImageIO.read(golden);
+        }
+        catch (IOException e)
+        {
+            throw new GcException("Failed to read golden image " + golden.getAbsolutePath(), e);
+        }
+        if (l_golden == null)
+        {
+            throw new GcException("Unsupported format of golden image " + golden.getAbsolutePath());
+        }
+
+        final int[] l_expected = l_golden.getRGB(0, 0, l_golden.getWidth(), l_golden.getHeight(), null, 0, l_golden.getWidth());
+        final Result l_result = compare(l_expected, l_golden.getWidth(), pixels, width);
+        if (l_result.matches())
+        {
+            return;
+        }
+
+        final String l_base = golden.getPath().replaceFirst("\\.png$", "");
+        final File l_actual = new File(l_base + "-actual.png");
+        write(toImage(pixels, width, height), l_actual);
+
+        final StringBuilder l_message = new StringBuilder("Image differs from golden image ").append(golden.getPath());
+        if (l_golden.getWidth() != width || l_golden.getHeight() != height)
+        {
+            l_message.append(": size ").append(width).append('x').append(height).append(" instead of ").append(l_golden.getWidth()).append('x').append(l_golden.getHeight());
+        }
+        else
+        {
+            final File l_heatMap = new File(l_base + "-diff.png");
+            write(createHeatMap(l_expected, pixels, width, height), l_heatMap);
+            l_message.append(l_result.getDifferingPixels() < 0 ? ": rejected by perceptual hash" : ": at least " + l_result.getDifferingPixels() + " pixels differ");
+            l_message.append(", heat map ").append(l_heatMap.getPath());
+        }
+        throw new GcAssertException(l_message.append(", actual image ").append(l_actual.getPath()).toString());
+    }
+
+    /**
+     * Create an image showing the expected image faded to gray and the differing pixels in red, the stronger the
+     * difference the brighter. Ignored regions are tinted blue.
+     */
+    public BufferedImage createHeatMap(int[] expected, int[] actual, int width, int height)
+    {
+        final int[] l_heat = new int[width * height];
+        for (int y = 0; y < height; y++)
+        {
+            for (int x = 0; x < width; x++)
+            {
+                final int i = y * width + x;
+                final int l_gray = 0xC0 + (luminance(expected[i]) >> 2);
+                if (isIgnored(x, y))
+                {
+                    l_heat[i] = 0xFF000000 | (l_gray / 2) << 16 | (l_gray / 2) << 8 | l_gray;
+                }
+                else if (!isEqual(expected, actual, width, height, x, y))
+                {
+                    final int l_delta = channelDelta(expected[i], actual[i]);
+                    l_heat[i] = 0xFF000000 | (0x80 + l_delta / 2) << 16;
+                }
+                else
+                {
+                    l_heat[i] = 0xFF000000 | l_gray << 16 | l_gray << 8 | l_gray;
+                }
+            }
+        }
+        return toImage(l_heat, width, height);
+    }
+
+    /**
+     * The 64 bit difference hash of an image: the image is reduced to 9x8 luminance samples, each bit tells whether a
+     * sample is brighter than its right neighbor.
+     */
+    static long differenceHash(int[] pixels, int width, int height)
+    {
+        long l_hash = 0;
+        for (int y = 0; y < 8; y++)
+        {
+            final int l_row = Math.min(height - 1, (2 * y + 1) * height / 16);
+            int l_previous = -1;
+            for (int x = 0; x < 9; x++)
+            {
+                final int l_luminance = luminance(pixels[l_row * width + Math.min(width - 1, (2 * x + 1) * width / 18)]);
+                if (l_previous >= 0)
+                {
+                    l_hash = l_hash << 1 | (l_previous > l_luminance ? 1 : 0);
+                }
+                l_previous = l_luminance;
+            }
+        }
+        return l_hash;
+    }
+
+    private boolean isEqual(int[] expected, int[] actual, int width, int height, int x, int y)
+    {
+        final int i = y * width + x;
+        if (channelDelta(expected[i], actual[i]) <= m_channelTolerance)
+        {
+            return true;
+        }
+        return m_antiAliasing && (isInNeighborhood(expected[i], actual, width, height, x, y) || isInNeighborhood(actual[i], expected, width, height, x, y));
+    }
+
+    private boolean isInNeighborhood(int pixel, int[] image, int width, int height, int x, int y)
+    {
+        for (int ny = Math.max(0, y - 1); ny <= Math.min(height - 1, y + 1); ny++)
+        {
+            for (int nx = Math.max(0, x - 1); nx <= Math.min(width - 1, x + 1); nx++)
+            {
+                if (channelDelta(pixel, image[ny * width + nx]) <= m_channelTolerance)
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isIgnored(int x, int y)
+    {
+        for (Rectangle l_region : m_ignored)
+        {
+            if (l_region.contains(x, y))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A task comparing a range of rows. It splits itself until the range is small enough and stops as soon as the
+     * number of differing pixels exceeds the maximum.
+     */
+    private final class DiffTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] m_expected;
+        private final int[] m_actual;
+        private final int m_width;
+        private final int m_fromRow;
+        private final int m_toRow;
+        private final AtomicInteger m_differing;
+
+        DiffTask(int[] expected, int[] actual, int width, int fromRow, int toRow, AtomicInteger differing)
+        {
+            m_expected = expected;
+            m_actual = actual;
+            m_width = width;
+            m_fromRow = fromRow;
+            m_toRow = toRow;
+            m_differing = differing;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (m_toRow - m_fromRow > ROWS_PER_TASK)
+            {
+                final int l_middle = (m_fromRow + m_toRow) >>> 1;
+                invokeAll(new DiffTask(m_expected, m_actual, m_width, m_fromRow, l_middle, m_differing), new DiffTask(m_expected, m_actual, m_width, l_middle, m_toRow, m_differing));
+                return;
+            }
+
+            final int l_height = m_expected.length / m_width;
+            for (int y = m_fromRow; y < m_toRow; y++)
+            {
+                if (m_differing.get() > m_maxDifferingPixels)
+                {
+                    return;
+                }
+
+                int l_differing = 0;
+                for (int x = 0; x < m_width; x++)
+                {
+                    final int i = y * m_width + x;
+                    if (m_expected[i] != m_actual[i] && !isIgnored(x, y) && !isEqual(m_expected, m_actual, m_width, l_height, x, y))
+                    {
+                        l_differing++;
+                    }
+                }
+                if (l_differing > 0)
+                {
+                    m_differing.addAndGet(l_differing);
+                }
+            }
+        }
+    }
+
+    private static int channelDelta(int a, int b)
+    {
+        int l_max = 0;
+        for (int l_shift = 0; l_shift < 32; l_shift += 8)
+        {
+            l_max = Math.max(l_max, Math.abs((a >>> l_shift & 0xFF) - (b >>> l_shift & 0xFF)));
+        }
+        return l_max;
+    }
+
+    private static int luminance(int argb)
+    {
+        return (299 * (argb >> 16 & 0xFF) + 587 * (argb >> 8 & 0xFF) + 114 * (argb & 0xFF)) / 1000;
+    }
+
+    private static BufferedImage toImage(int[] pixels, int width, int height)
+    {
+        final BufferedImage l_image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        l_image.setRGB(0, 0, width, height, pixels, 0, width);
+        return l_image;
+    }
+
+    private static void write(BufferedImage image, File file)
+    {
+        try
+        {
+            if (!ImageIO.write(image, "png", file))
+            {
+                throw new GcException("No PNG writer available");
+            }
+        }
+        catch (IOException e)
+        {
+            throw new GcException("Failed to write image " + file.getAbsolutePath(), e);
+        }
+    }
+
+    private static synchronized ForkJoinPool getPool()
+    {
+        if (ms_pool == null)
+        {
+            ms_pool = new ForkJoinPool();
+        }
+        return ms_pool;
+    }
+}
@@ -0,0 +1,116 @@
+// Copyright 2014 SICK AG. All rights reserved.
+package de.sick.guicheck;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A child first classloader for the classes of an application under test. Each test class can load the application
+ * into its own loader, thus static state of the application does not leak from one test class to the next while the
+ * windowing toolkit keeps running.
+ * <p>
+ * The classes of the JRE, the windowing toolkits, JUnit and GUIcheck itself are always loaded by the parent, so the
+ * test and the application share them.
+ *
+ * @author agent (created)
+ */
+public final class GcIsolatingClassLoader extends URLClassLoader
+{
+    private static final String[] SHARED_PACKAGES = {"java.", "javax.", "javafx.", "com.sun.", "sun.", "jdk.", "org.w3c.", "org.xml.", "org.junit.", "junit."};
+
+    /**
+     * The location of the GUIcheck classes, they are shared with the test as well.
+     */
+    private static final String LIBRARY_LOCATION = GcIsolatingClassLoader.class.getProtectionDomain().getCodeSource().getLocation().toString();
+
+    static
+    {
+        registerAsParallelCapable();
+    }
+
+    /**
+     * Create a loader for the class path of the current JVM.
+     */
+    public GcIsolatingClassLoader(ClassLoader parent)
+    {
+        this(getClassPath(), parent);
+    }
+
+    public GcIsolatingClassLoader(URL[] urls, ClassLoader parent)
+    {
+        super(urls, parent);
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException
+    {
+        if (isShared(name))
+        {
+            return super.loadClass(name, resolve);
+        }
+
+        synchronized (getClassLoadingLock(name))
+        {
+            Class<?> l_class = findLoadedClass(name);
+            if (l_class == null)
+            {
+                try
+                {
+                    l_class = findClass(name);
+                }
+                catch (ClassNotFoundException e)
+                {
+                    // Not part of the application
+                    return super.loadClass(name, resolve);
+                }
+            }
+
+            if (resolve)
+            {
+                resolveClass(l_class);
+            }
+            return l_class;
+        }
+    }
+
+    private boolean isShared(String name)
+    {
+        for (String l_package : SHARED_PACKAGES)
+        {
+            if (name.startsWith(l_package))
+            {
+                return true;
+            }
+        }
+
+        final URL l_resource = getParent() == null ? null : getParent().getResource(name.replace('.', '/') + ".class");
+        return l_resource != null && l_resource.toString().contains(LIBRARY_LOCATION);
+    }
+
+    private static URL[] getClassPath()
+    {
+        // Surefire starts the tests via a manifest only jar, but provides the real class path as property
+        final String l_classPath = System.getProperty("surefire.test.class.path", System.getProperty("java.class.path"));
+
+        final List<URL> l_urls = new ArrayList<URL>();
+        for (String l_entry : l_classPath.split(File.pathSeparator))
+        {
+            if (!l_entry.isEmpty())
+            {
+                try
+                {
+                    l_urls.add(new File(l_entry).toURI().toURL());
+                }
+                catch (MalformedURLException e)
+                {
+                    throw new GcException("Invalid class path entry " + l_entry, e);
+                }
+            }
+        }
+        return l_urls.toArray(new URL[l_urls.size()]);
+    }
+}
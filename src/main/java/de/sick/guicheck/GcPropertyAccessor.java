@@ -0,0 +1,262 @@
+// Copyright 2013 SICK AG. All rights reserved.
+package de.sick.guicheck;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Central registry of property getters and setters used by the property checks of JavaFX and Swing components.
+ * <p>
+ * The accessors are looked up once per class, property and value type and stored as {@link MethodHandle}. The cache is
+ * attached to the class via {@link ClassValue}, thus it does not keep classes of unloaded class loaders alive.
+ *
+ * @author agent (created)
+ */
+public final class GcPropertyAccessor
+{
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    /**
+     * Marks properties without a property method in the cache.
+     */
+    private static final MethodHandle NO_METHOD = MethodHandles.constant(Object.class, null);
+
+    /**
+     * Used to convert a wrapper class to its corresponding primitive type.
+     */
+    private static final Map<Class<?>, Class<?>> WRAPPER_TO_PRIMITIVE = new HashMap<Class<?>, Class<?>>();
+    static
+    {
+        WRAPPER_TO_PRIMITIVE.put(Boolean.class, boolean.class);
+        WRAPPER_TO_PRIMITIVE.put(Byte.class, byte.class);
+        WRAPPER_TO_PRIMITIVE.put(Short.class, short.class);
+        WRAPPER_TO_PRIMITIVE.put(Character.class, char.class);
+        WRAPPER_TO_PRIMITIVE.put(Integer.class, int.class);
+        WRAPPER_TO_PRIMITIVE.put(Long.class, long.class);
+        WRAPPER_TO_PRIMITIVE.put(Float.class, float.class);
+        WRAPPER_TO_PRIMITIVE.put(Double.class, double.class);
+    }
+
+    private static final ClassValue<ConcurrentMap<String, MethodHandle>> ACCESSORS = new ClassValue<ConcurrentMap<String, MethodHandle>>()
+    {
+        @Override
+        protected ConcurrentMap<String, MethodHandle> computeValue(Class<?> type)
+        {
+            return new ConcurrentHashMap<String, MethodHandle>();
+        }
+    };
+
+    private GcPropertyAccessor()
+    {
+        // Prevent instantiation
+    }
+
+    /**
+     * Return the getter of the given property. The type of the expected value selects between the "get" and "is"
+     * prefix.
+     *
+     * @param valueType The type of the expected value, may be <code>null</code>.
+     * @return A handle of type <code>(Object)Object</code>.
+     * @throws GcException Thrown if the getter does not exist.
+     */
+    public static MethodHandle getGetter(Class<?> clazz, String property, Class<?> valueType)
+    {
+        final String l_name = GcUtils.getPropertyGetter(property, valueType);
+        final ConcurrentMap<String, MethodHandle> l_accessors = ACCESSORS.get(clazz);
+
+        MethodHandle l_handle = l_accessors.get(l_name);
+        if (l_handle == null)
+        {
+            try
+            {
+                l_handle = unreflect(clazz.getMethod(l_name, (Class<?>[])null)).asType(GETTER_TYPE);
+            }
+            catch (NoSuchMethodException | IllegalAccessException | SecurityException e)
+            {
+                throw new GcException("Failed to access property " + property, e);
+            }
+            l_accessors.putIfAbsent(l_name, l_handle);
+        }
+
+        return l_handle;
+    }
+
+    /**
+     * Return the setter of the given property. If there is no setter for the type of the value, a setter for the
+     * corresponding primitive type is used. Without a type, the setter taking an object must be unique.
+     *
+     * @param valueType The type of the value to set, may be <code>null</code>.
+     * @return A handle of type <code>(Object,Object)void</code>.
+     * @throws GcException Thrown if the setter does not exist or is ambiguous.
+     */
+    public static MethodHandle getSetter(Class<?> clazz, String property, Class<?> valueType)
+    {
+        final String l_name = GcUtils.getPropertySetter(property);
+        final String l_key = l_name + "(" + (valueType == null ? "" : valueType.getName()) + ")";
+        final ConcurrentMap<String, MethodHandle> l_accessors = ACCESSORS.get(clazz);
+
+        MethodHandle l_handle = l_accessors.get(l_key);
+        if (l_handle == null)
+        {
+            try
+            {
+                l_handle = unreflect(findSetter(clazz, l_name, valueType)).asType(SETTER_TYPE);
+            }
+            catch (NoSuchMethodException | IllegalAccessException | SecurityException e)
+            {
+                throw new GcException("Failed to set property " + property, e);
+            }
+            l_accessors.putIfAbsent(l_key, l_handle);
+        }
+
+        return l_handle;
+    }
+
+    /**
+     * Return the method returning the property object itself, e.g. <code>textProperty()</code> for the property
+     * <code>text</code>. JavaFX classes provide such methods for observable properties.
+     *
+     * @return A handle of type <code>(Object)Object</code> or <code>null</code> if there is no such method.
+     */
+    public static MethodHandle getPropertyMethod(Class<?> clazz, String property)
+    {
+        final String l_name = property + "Property";
+        final ConcurrentMap<String, MethodHandle> l_accessors = ACCESSORS.get(clazz);
+
+        MethodHandle l_handle = l_accessors.get(l_name);
+        if (l_handle == null)
+        {
+            try
+            {
+                l_handle = unreflect(clazz.getMethod(l_name, (Class<?>[])null)).asType(GETTER_TYPE);
+            }
+            catch (NoSuchMethodException | IllegalAccessException | SecurityException e)
+            {
+                l_handle = NO_METHOD;
+            }
+            l_accessors.putIfAbsent(l_name, l_handle);
+        }
+
+        return l_handle == NO_METHOD ? null : l_handle;
+    }
+
+    /**
+     * Read the value of the given property.
+     *
+     * @see #getGetter(Class, String, Class)
+     */
+    public static Object getValue(Object obj, String property, Class<?> valueType)
+    {
+        return invokeGetter(getGetter(obj.getClass(), property, valueType), obj, property);
+    }
+
+    /**
+     * Set the value of the given property.
+     *
+     * @see #getSetter(Class, String, Class)
+     */
+    public static void setValue(Object obj, String property, Object value)
+    {
+        invokeSetter(getSetter(obj.getClass(), property, value == null ? null : value.getClass()), obj, property, value);
+    }
+
+    /**
+     * Call a getter returned by {@link #getGetter(Class, String, Class)}.
+     */
+    public static Object invokeGetter(MethodHandle getter, Object obj, String property)
+    {
+        try
+        {
+            return (Object)getter.invokeExact(obj);
+        }
+        catch (Error e)
+        {
+            throw e;
+        }
+        catch (Throwable e)
+        {
+            throw new GcException("Failed to access property " + property, e);
+        }
+    }
+
+    /**
+     * Call a setter returned by {@link #getSetter(Class, String, Class)}.
+     */
+    public static void invokeSetter(MethodHandle setter, Object obj, String property, Object value)
+    {
+        try
+        {
+            setter.invokeExact(obj, value);
+        }
+        catch (Error e)
+        {
+            throw e;
+        }
+        catch (Throwable e)
+        {
+            throw new GcException("Failed to set property " + property, e);
+        }
+    }
+
+    private static Method findSetter(Class<?> clazz, String name, Class<?> valueType) throws NoSuchMethodException
+    {
+        if (valueType == null)
+        {
+            // Without a type, the setter must be unique and take an object. Bridge methods of generic setters are
+            // skipped.
+            Method l_setter = null;
+            for (Method l_method : clazz.getMethods())
+            {
+                if (l_method.getName().equals(name) && !l_method.isBridge() && l_method.getParameterTypes().length == 1 && !l_method.getParameterTypes()[0].isPrimitive())
+                {
+                    if (l_setter != null)
+                    {
+                        throw new NoSuchMethodException("Ambiguous setter " + clazz.getName() + "." + name + " for a null value");
+                    }
+                    l_setter = l_method;
+                }
+            }
+            if (l_setter == null)
+            {
+                throw new NoSuchMethodException(clazz.getName() + "." + name);
+            }
+            return l_setter;
+        }
+
+        try
+        {
+            return clazz.getMethod(name, valueType);
+        }
+        catch (NoSuchMethodException e)
+        {
+            // try primitive type
+            final Class<?> l_primitive = WRAPPER_TO_PRIMITIVE.get(valueType);
+            if (l_primitive == null)
+            {
+                throw e;
+            }
+            return clazz.getMethod(name, l_primitive);
+        }
+    }
+
+    private static MethodHandle unreflect(Method method) throws IllegalAccessException
+    {
+        try
+        {
+            return MethodHandles.publicLookup().unreflect(method);
+        }
+        catch (IllegalAccessException e)
+        {
+            // Public methods declared in non public classes need an accessible method
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method);
+        }
+    }
+}
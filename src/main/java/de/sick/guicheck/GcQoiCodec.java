@@ -0,0 +1,211 @@
+// Copyright 2014 SICK AG. All rights reserved.
+package de.sick.guicheck;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Lossless image codec following the "Quite OK Image" format: pixels are encoded as runs, references into a table of
+ * recently seen colors, small differences to the previous pixel or full colors. Screenshots of user interfaces consist
+ * mostly of runs and repeated colors, so this is much faster than PNG while compressing nearly as well.
+ *
+ * @author agent (created)
+ */
+final class GcQoiCodec
+{
+    private static final int MAGIC = 0x716F6966; // "qoif"
+    private static final int HEADER_SIZE = 14;
+    private static final byte[] END_MARKER = {0, 0, 0, 0, 0, 0, 0, 1};
+
+    private static final int OP_INDEX = 0x00;
+    private static final int OP_DIFF = 0x40;
+    private static final int OP_LUMA = 0x80;
+    private static final int OP_RUN = 0xC0;
+    private static final int OP_RGB = 0xFE;
+    private static final int OP_RGBA = 0xFF;
+    private static final int MASK_2 = 0xC0;
+    private static final int MAX_RUN = 62;
+
+    private GcQoiCodec()
+    {
+        // Prevent instantiation
+    }
+
+    /**
+     * @param pixels ARGB pixels line by line. Only the first <code>width * height</code> elements are used.
+     * @return The encoded image including the header.
+     */
+    static byte[] encode(int[] pixels, int width, int height)
+    {
+        final int l_size = width * height;
+
+        // Worst case: every pixel as full color
+        final byte[] l_out = new byte[HEADER_SIZE + l_size * 5 + END_MARKER.length];
+        final ByteBuffer l_header = ByteBuffer.wrap(l_out);
+        l_header.putInt(MAGIC).putInt(width).putInt(height).put((byte)4).put((byte)0);
+
+        final int[] l_index = new int[64];
+        int p = HEADER_SIZE;
+        int l_previous = 0xFF000000;
+        int l_run = 0;
+
+        for (int i = 0; i < l_size; i++)
+        {
+            final int l_pixel = pixels[i];
+            if (l_pixel == l_previous)
+            {
+                l_run++;
+                if (l_run == MAX_RUN || i == l_size - 1)
+                {
+                    l_out[p++] = (byte)(OP_RUN | (l_run - 1));
+                    l_run = 0;
+                }
+                continue;
+            }
+
+            if (l_run > 0)
+            {
+                l_out[p++] = (byte)(OP_RUN | (l_run - 1));
+                l_run = 0;
+            }
+
+            final int l_hash = hash(l_pixel);
+            if (l_index[l_hash] == l_pixel)
+            {
+                l_out[p++] = (byte)(OP_INDEX | l_hash);
+            }
+            else
+            {
+                l_index[l_hash] = l_pixel;
+
+                if ((l_pixel >>> 24) == (l_previous >>> 24))
+                {
+                    final int l_dr = (byte)((l_pixel >> 16) - (l_previous >> 16));
+                    final int l_dg = (byte)((l_pixel >> 8) - (l_previous >> 8));
+                    final int l_db = (byte)(l_pixel - l_previous);
+                    final int l_drg = l_dr - l_dg;
+                    final int l_dbg = l_db - l_dg;
+
+                    if (l_dr >= -2 && l_dr <= 1 && l_dg >= -2 && l_dg <= 1 && l_db >= -2 && l_db <= 1)
+                    {
+                        l_out[p++] = (byte)(OP_DIFF | (l_dr + 2) << 4 | (l_dg + 2) << 2 | (l_db + 2));
+                    }
+                    else if (l_dg >= -32 && l_dg <= 31 && l_drg >= -8 && l_drg <= 7 && l_dbg >= -8 && l_dbg <= 7)
+                    {
+                        l_out[p++] = (byte)(OP_LUMA | (l_dg + 32));
+                        l_out[p++] = (byte)((l_drg + 8) << 4 | (l_dbg + 8));
+                    }
+                    else
+                    {
+                        l_out[p++] = (byte)OP_RGB;
+                        l_out[p++] = (byte)(l_pixel >> 16);
+                        l_out[p++] = (byte)(l_pixel >> 8);
+                        l_out[p++] = (byte)l_pixel;
+                    }
+                }
+                else
+                {
+                    l_out[p++] = (byte)OP_RGBA;
+                    l_out[p++] = (byte)(l_pixel >> 16);
+                    l_out[p++] = (byte)(l_pixel >> 8);
+                    l_out[p++] = (byte)l_pixel;
+                    l_out[p++] = (byte)(l_pixel >>> 24);
+                }
+            }
+            l_previous = l_pixel;
+        }
+
+        System.arraycopy(END_MARKER, 0, l_out, p, END_MARKER.length);
+        return Arrays.copyOf(l_out, p + END_MARKER.length);
+    }
+
+    /**
+     * @return The width of the encoded image starting at the position of the buffer.
+     */
+    static int getWidth(ByteBuffer encoded)
+    {
+        return encoded.getInt(encoded.position() + 4);
+    }
+
+    /**
+     * @return The height of the encoded image starting at the position of the buffer.
+     */
+    static int getHeight(ByteBuffer encoded)
+    {
+        return encoded.getInt(encoded.position() + 8);
+    }
+
+    /**
+     * Decode the image starting at the position of the buffer. The position of the buffer is not changed.
+     *
+     * @return ARGB pixels line by line.
+     */
+    static int[] decode(ByteBuffer encoded)
+    {
+        final ByteBuffer l_in = encoded.duplicate();
+        if (l_in.getInt() != MAGIC)
+        {
+            throw new GcException("Invalid image data");
+        }
+        final int l_width = l_in.getInt();
+        final int l_height = l_in.getInt();
+        l_in.position(l_in.position() + 2);
+
+        final int[] l_pixels = new int[l_width * l_height];
+        final int[] l_index = new int[64];
+        int l_pixel = 0xFF000000;
+
+        for (int i = 0; i < l_pixels.length;)
+        {
+            final int l_op = l_in.get() & 0xFF;
+            if (l_op == OP_RGB)
+            {
+                l_pixel = (l_pixel & 0xFF000000) | (l_in.get() & 0xFF) << 16 | (l_in.get() & 0xFF) << 8 | (l_in.get() & 0xFF);
+            }
+            else if (l_op == OP_RGBA)
+            {
+                final int l_rgb = (l_in.get() & 0xFF) << 16 | (l_in.get() & 0xFF) << 8 | (l_in.get() & 0xFF);
+                l_pixel = (l_in.get() & 0xFF) << 24 | l_rgb;
+            }
+            else if ((l_op & MASK_2) == OP_INDEX)
+            {
+                l_pixel = l_index[l_op];
+            }
+            else if ((l_op & MASK_2) == OP_DIFF)
+            {
+                l_pixel = withRgb(l_pixel, (l_op >> 4 & 3) - 2, (l_op >> 2 & 3) - 2, (l_op & 3) - 2);
+            }
+            else if ((l_op & MASK_2) == OP_LUMA)
+            {
+                final int l_next = l_in.get() & 0xFF;
+                final int l_dg = (l_op & 0x3F) - 32;
+                l_pixel = withRgb(l_pixel, l_dg + (l_next >> 4) - 8, l_dg, l_dg + (l_next & 0x0F) - 8);
+            }
+            else
+            {
+                // Run, the pixel is repeated and the index is unchanged
+                final int l_end = Math.min(l_pixels.length, i + (l_op & 0x3F) + 1);
+                Arrays.fill(l_pixels, i, l_end, l_pixel);
+                i = l_end;
+                continue;
+            }
+
+            l_index[hash(l_pixel)] = l_pixel;
+            l_pixels[i++] = l_pixel;
+        }
+        return l_pixels;
+    }
+
+    private static int withRgb(int pixel, int dr, int dg, int db)
+    {
+        final int l_r = (pixel >> 16) + dr & 0xFF;
+        final int l_g = (pixel >> 8) + dg & 0xFF;
+        final int l_b = pixel + db & 0xFF;
+        return (pixel & 0xFF000000) | l_r << 16 | l_g << 8 | l_b;
+    }
+
+    private static int hash(int pixel)
+    {
+        return ((pixel >> 16 & 0xFF) * 3 + (pixel >> 8 & 0xFF) * 5 + (pixel & 0xFF) * 7 + (pixel >>> 24) * 11) % 64;
+    }
+}
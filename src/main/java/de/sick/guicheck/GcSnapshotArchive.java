@@ -0,0 +1,382 @@
+// Copyright 2014 SICK AG. All rights reserved.
+package de.sick.guicheck;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An append-only archive of snapshots. Each distinct image is stored once, keyed by the SHA-256 hash of its size and
+ * pixels, and compressed with the {@link GcQoiCodec}. Every snapshot adds a small name record pointing to the image,
+ * so a suite taking the same snapshot a thousand times stores the pixels once.
+ * <p>
+ * The archive is read via a memory mapped buffer. A record which was not completely written, e.g. because the JVM was
+ * killed, is dropped when the archive is opened again.
+ * <p>
+ * An archive is locked while it is open, so it cannot be shared by several JVMs. Tests running in forked JVMs need an
+ * archive per fork.
+ * <p>
+ * Layout: the header <code>"GCSA", version</code>, followed by records. An image record is
+ * <code>'I', hash[32], length, data[length]</code>, a name record is <code>'N', hash[32], time, length,
+ * name[length]</code> with the name in UTF-8. All numbers are big endian ints except the time, which is a long.
+ *
+ * @see GcSnapshotArchiveExport
+ * @author agent (created)
+ */
+public final class GcSnapshotArchive implements Closeable
+{
+    private static final int MAGIC = 0x47435341; // "GCSA"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final byte IMAGE_RECORD = 'I';
+    private static final byte NAME_RECORD = 'N';
+    private static final int HASH_SIZE = 32;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File m_file;
+    private final RandomAccessFile m_raf;
+    private final FileChannel m_channel;
+    private final FileLock m_lock;
+
+    // Guarded by this
+    private final Map<String, Integer> m_images = new HashMap<String, Integer>();
+    private final Map<String, String> m_names = new LinkedHashMap<String, String>();
+    private MappedByteBuffer m_map;
+    private long m_end;
+
+    /**
+     * Open the given archive for reading and appending, create it if it does not exist.
+     *
+     * @throws IOException Thrown if the file cannot be opened, is locked by another archive or is no snapshot archive.
+     */
+    public GcSnapshotArchive(File file) throws IOException
+    {
+        m_file = file;
+        m_raf = new RandomAccessFile(file, "rw");
+        m_channel = m_raf.getChannel();
+        try
+        {
+            m_lock = lock();
+            if (m_channel.size() == 0)
+            {
+                final ByteBuffer l_header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+                l_header.flip();
+                m_channel.write(l_header, 0);
+            }
+            scan();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            m_raf.close();
+            throw e;
+        }
+    }
+
+    public File getFile()
+    {
+        return m_file;
+    }
+
+    /**
+     * Add a snapshot to the archive. The pixels are only stored if the archive does not contain the same image yet.
+     * Hashing and encoding run outside the lock of the archive, so several threads can add snapshots in parallel.
+     *
+     * @param name The name of the snapshot, a later snapshot with the same name hides the earlier one.
+     * @param pixels ARGB pixels line by line. Only the first <code>width * height</code> elements are used.
+     * @return The hash of the image as hex string.
+     */
+    public String add(String name, int[] pixels, int width, int height) throws IOException
+    {
+        final byte[] l_hash = hash(pixels, width, height);
+        final String l_key = toHex(l_hash);
+
+        final boolean l_stored;
+        synchronized (this)
+        {
+            l_stored = m_images.containsKey(l_key);
+        }
+        final byte[] l_data = l_stored ? null : GcQoiCodec.encode(pixels, width, height);
+
+        final byte[] l_name = name.getBytes(UTF8);
+        final ByteBuffer l_nameRecord = ByteBuffer.allocate(1 + HASH_SIZE + 8 + 4 + l_name.length);
+        l_nameRecord.put(NAME_RECORD).put(l_hash).putLong(System.currentTimeMillis()).putInt(l_name.length).put(l_name);
+
+        synchronized (this)
+        {
+            // Another thread may have stored the same image in the meantime
+            if (l_data != null && !m_images.containsKey(l_key))
+            {
+                final ByteBuffer l_record = ByteBuffer.allocate(1 + HASH_SIZE + 4 + l_data.length);
+                l_record.put(IMAGE_RECORD).put(l_hash).putInt(l_data.length).put(l_data);
+                append(l_record);
+                m_images.put(l_key, (int)(m_end - l_data.length));
+            }
+
+            append(l_nameRecord);
+            m_names.put(name, l_key);
+        }
+
+        return l_key;
+    }
+
+    /**
+     * @return The names of all snapshots in the order they were added first.
+     */
+    public synchronized List<String> getNames()
+    {
+        return new ArrayList<String>(m_names.keySet());
+    }
+
+    /**
+     * @return The number of distinct images stored in the archive.
+     */
+    public synchronized int getImageCount()
+    {
+        return m_images.size();
+    }
+
+    /**
+     * @return The encoded image of the given snapshot, or <code>null</code> if there is no such snapshot. The buffer is
+     *         positioned at the start of the image.
+     */
+    synchronized ByteBuffer getEncoded(String name) throws IOException
+    {
+        final String l_key = m_names.get(name);
+        if (l_key == null)
+        {
+            return null;
+        }
+
+        final ByteBuffer l_data = map().duplicate();
+        l_data.position(m_images.get(l_key));
+        return l_data;
+    }
+
+    /**
+     * @return The ARGB pixels of the given snapshot, or <code>null</code> if there is no such snapshot.
+     */
+    public int[] read(String name) throws IOException
+    {
+        final ByteBuffer l_data = getEncoded(name);
+        return l_data == null ? null : GcQoiCodec.decode(l_data);
+    }
+
+    /**
+     * @return The image of the given snapshot, or <code>null</code> if there is no such snapshot.
+     */
+    public BufferedImage readImage(String name) throws IOException
+    {
+        final ByteBuffer l_data = getEncoded(name);
+        if (l_data == null)
+        {
+            return null;
+        }
+
+        final int l_width = GcQoiCodec.getWidth(l_data);
+        final int l_height = GcQoiCodec.getHeight(l_data);
+        final BufferedImage l_image = new BufferedImage(l_width, l_height, BufferedImage.TYPE_INT_ARGB);
+        l_image.setRGB(0, 0, l_width, l_height, GcQoiCodec.decode(l_data), 0, l_width);
+        return l_image;
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        m_map = null;
+        m_lock.release();
+        m_raf.close();
+    }
+
+    private FileLock lock() throws IOException
+    {
+        FileLock l_lock;
+        try
+        {
+            l_lock = m_channel.tryLock();
+        }
+        catch (OverlappingFileLockException e)
+        {
+            // Locked by this JVM
+            l_lock = null;
+        }
+
+        if (l_lock == null)
+        {
+            throw new IOException("Snapshot archive is in use: " + m_file);
+        }
+        return l_lock;
+    }
+
+    private void append(ByteBuffer record) throws IOException
+    {
+        record.flip();
+        if (m_end + record.remaining() > Integer.MAX_VALUE)
+        {
+            throw new IOException("Snapshot archive too large: " + m_file);
+        }
+
+        long l_position = m_end;
+        while (record.hasRemaining())
+        {
+            l_position += m_channel.write(record, l_position);
+        }
+        m_end = l_position;
+    }
+
+    /**
+     * Map the whole archive. The mapping is renewed if records were appended since the last mapping.
+     */
+    private MappedByteBuffer map() throws IOException
+    {
+        if (m_map == null || m_map.capacity() < m_end)
+        {
+            m_map = m_channel.map(FileChannel.MapMode.READ_ONLY, 0, m_end);
+        }
+        return m_map;
+    }
+
+    /**
+     * Build the indexes from the records in the file. Scanning stops at the first incomplete record, which is cut off.
+     * The file is read via the channel, a mapping would prevent truncating the file on some platforms.
+     */
+    private void scan() throws IOException
+    {
+        final long l_size = m_channel.size();
+        if (l_size > Integer.MAX_VALUE)
+        {
+            throw new IOException("Snapshot archive too large: " + m_file);
+        }
+
+        final ByteBuffer l_header = ByteBuffer.allocate(HEADER_SIZE);
+        if (!read(l_header, 0) || l_header.getInt() != MAGIC || l_header.getInt() != VERSION)
+        {
+            throw new IOException("No snapshot archive: " + m_file);
+        }
+
+        // Type, hash and the fixed fields of the larger name record
+        final ByteBuffer l_record = ByteBuffer.allocate(1 + HASH_SIZE + 8 + 4);
+        final byte[] l_hash = new byte[HASH_SIZE];
+        long l_end = HEADER_SIZE;
+        while (l_end < l_size)
+        {
+            l_record.clear().limit((int)Math.min(l_record.capacity(), l_size - l_end));
+            read(l_record, l_end);
+            if (l_record.remaining() < 1 + HASH_SIZE + 4)
+            {
+                break;
+            }
+
+            final byte l_type = l_record.get();
+            l_record.get(l_hash);
+            final String l_key = toHex(l_hash);
+            if (l_type == IMAGE_RECORD)
+            {
+                final int l_length = l_record.getInt();
+                final long l_data = l_end + 1 + HASH_SIZE + 4;
+                if (l_length < 0 || l_data + l_length > l_size)
+                {
+                    break;
+                }
+                m_images.put(l_key, (int)l_data);
+                l_end = l_data + l_length;
+            }
+            else if (l_type == NAME_RECORD && l_record.remaining() == 8 + 4)
+            {
+                l_record.getLong();
+                final int l_length = l_record.getInt();
+                final long l_data = l_end + l_record.capacity();
+                if (l_length < 0 || l_data + l_length > l_size || !m_images.containsKey(l_key))
+                {
+                    break;
+                }
+                final ByteBuffer l_name = ByteBuffer.allocate(l_length);
+                read(l_name, l_data);
+                m_names.put(new String(l_name.array(), UTF8), l_key);
+                l_end = l_data + l_length;
+            }
+            else
+            {
+                break;
+            }
+        }
+        m_end = l_end;
+
+        // Drop an incomplete record, so it cannot be mistaken for the rest of a record appended later
+        if (l_end < l_size)
+        {
+            m_channel.truncate(l_end);
+        }
+    }
+
+    /**
+     * Read from the given position until the buffer is full or the end of the file is reached. The buffer is flipped
+     * afterwards.
+     *
+     * @return <code>true</code> if the buffer was filled.
+     */
+    private boolean read(ByteBuffer buffer, long position) throws IOException
+    {
+        long l_position = position;
+        int l_read;
+        while (buffer.hasRemaining() && (l_read = m_channel.read(buffer, l_position)) >= 0)
+        {
+            l_position += l_read;
+        }
+        final boolean l_full = !buffer.hasRemaining();
+        buffer.flip();
+        return l_full;
+    }
+
+    private static byte[] hash(int[] pixels, int width, int height)
+    {
+        final MessageDigest l_digest;
+        try
+        {
+            l_digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new GcException("SHA-256 is not available", e);
+        }
+
+        final ByteBuffer l_chunk = ByteBuffer.allocate(64 * 1024);
+        l_chunk.putInt(width).putInt(height);
+        final int l_size = width * height;
+        for (int i = 0; i < l_size; i++)
+        {
+            if (!l_chunk.hasRemaining())
+            {
+                l_digest.update(l_chunk.array(), 0, l_chunk.position());
+                l_chunk.clear();
+            }
+            l_chunk.putInt(pixels[i]);
+        }
+        l_digest.update(l_chunk.array(), 0, l_chunk.position());
+        return l_digest.digest();
+    }
+
+    private static String toHex(byte[] bytes)
+    {
+        final StringBuilder l_sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+        {
+            l_sb.append(Character.forDigit(b >> 4 & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return l_sb.toString();
+    }
+}
@@ -0,0 +1,78 @@
+// Copyright 2014 SICK AG. All rights reserved.
+package de.sick.guicheck;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Writes snapshots of a {@link GcSnapshotArchive} as PNG files.
+ *
+ * <pre>
+ * java de.sick.guicheck.GcSnapshotArchiveExport snapshots.gcsa target/snapshots [name...]
+ * </pre>
+ *
+ * Without names all snapshots are exported. The name of a snapshot is the path it would have been written to without
+ * the archive, it is resolved against the output directory.
+ *
+ * @author agent (created)
+ */
+public final class GcSnapshotArchiveExport
+{
+    private GcSnapshotArchiveExport()
+    {
+        // Prevent instantiation
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 2)
+        {
+            System.out.println("Usage: GcSnapshotArchiveExport <archive> <output directory> [name...]");
+            System.exit(1);
+        }
+
+        try (GcSnapshotArchive l_archive = new GcSnapshotArchive(new File(args[0])))
+        {
+            final List<String> l_names = args.length > 2 ? Arrays.asList(args).subList(2, args.length) : l_archive.getNames();
+            for (String l_name : l_names)
+            {
+                final File l_file = export(l_archive, l_name, new File(args[1]));
+                System.out.println(l_file == null ? "No snapshot " + l_name : "Exported " + l_file.getPath());
+            }
+        }
+    }
+
+    /**
+     * Write the given snapshot as PNG file into the given directory.
+     *
+     * @return The written file or <code>null</code> if the archive does not contain the snapshot.
+     */
+    public static File export(GcSnapshotArchive archive, String name, File directory) throws IOException
+    {
+        final BufferedImage l_image = archive.readImage(name);
+        if (l_image == null)
+        {
+            return null;
+        }
+
+        String l_relative = name.replaceFirst("^([A-Za-z]:)?[/\\\\]+", "");
+        if (!l_relative.endsWith(".png"))
+        {
+            l_relative += ".png";
+        }
+
+        final File l_file = new File(directory, l_relative);
+        final File l_parent = l_file.getParentFile();
+        if (l_parent != null && !l_parent.isDirectory() && !l_parent.mkdirs())
+        {
+            throw new IOException("Cannot create directory " + l_parent);
+        }
+        ImageIO.write(l_image, "png", l_file);
+        return l_file;
+    }
+}
@@ -0,0 +1,336 @@
+// Copyright 2014 SICK AG. All rights reserved.
+package de.sick.guicheck;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Encodes and writes snapshots in the background, so the windowing thread only has to copy the pixels. The captured
+ * pixels are passed in buffers taken from a small pool via {@link #acquireBuffer(int)}. The encoders read the array
+ * backing the buffer directly, and the writer returns the buffer to the pool after encoding.
+ * <p>
+ * The number of pending snapshots is bounded. If the writer falls behind, the thread submitting a snapshot encodes it
+ * itself, which slows down the test instead of piling up captured images. Pending snapshots are written by
+ * {@link #flush()}, at the latest when the JVM exits.
+ * <p>
+ * Snapshots are stored as PNG files or, if configured, in a {@link GcSnapshotArchive}.
+ *
+ * @author agent (created)
+ */
+public final class GcSnapshotWriter
+{
+    private static final int QUEUE_CAPACITY = 8;
+    private static final int POOL_CAPACITY = 4;
+
+    /**
+     * System property with the path of the snapshot archive, see {@link #setArchive(File)}.
+     */
+    public static final String ARCHIVE_PROPERTY = "guicheck.snapshot.archive";
+
+    private static final ThreadPoolExecutor ms_executor;
+    private static final Set<Future<File>> ms_pending = Collections.newSetFromMap(new ConcurrentHashMap<Future<File>, Boolean>());
+    private static final ConcurrentLinkedQueue<IntBuffer> ms_pool = new ConcurrentLinkedQueue<IntBuffer>();
+
+    private static final Object ms_archiveLock = new Object();
+    // Guarded by ms_archiveLock
+    private static GcSnapshotArchive ms_archive;
+    private static boolean ms_archiveInitialized;
+
+    static
+    {
+        final int l_threads = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1));
+        ms_executor = new ThreadPoolExecutor(l_threads, l_threads, 10, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY), new ThreadFactory()
+        {
+            private final AtomicInteger m_count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                final Thread l_thread = new Thread(r, "GUIcheck-Snapshot-Writer-" + m_count.incrementAndGet());
+                l_thread.setDaemon(true);
+                return l_thread;
+            }
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        ms_executor.allowCoreThreadTimeOut(true);
+
+        Runtime.getRuntime().addShutdownHook(new Thread("GUIcheck-Snapshot-Flush")
+        {
+            @Override
+            public void run()
+            {
+                flush();
+                synchronized (ms_archiveLock)
+                {
+                    closeArchive();
+                }
+            }
+        });
+    }
+
+    private GcSnapshotWriter()
+    {
+        // Prevent instantiation
+    }
+
+    /**
+     * @return A buffer from the pool with room for at least the given number of pixels, positioned at 0 with the limit
+     *         set to the size.
+     */
+    public static IntBuffer acquireBuffer(int size)
+    {
+        for (IntBuffer l_buffer; (l_buffer = ms_pool.poll()) != null;)
+        {
+            if (l_buffer.capacity() >= size)
+            {
+                l_buffer.clear().limit(size);
+                return l_buffer;
+            }
+        }
+        return IntBuffer.allocate(size);
+    }
+
+    /**
+     * Store a snapshot in the background: in the snapshot archive if one is configured, otherwise as PNG file. The
+     * buffer is returned to the pool afterwards and must not be used by the caller any more.
+     *
+     * @param pixels Non premultiplied ARGB pixels, line by line without padding, starting at position 0.
+     * @param file The PNG file, it gives the name of the snapshot in the archive.
+     * @return The future of the written file, this is the archive if one is configured.
+     * @see #setArchive(File)
+     */
+    public static Future<File> snapshot(final IntBuffer pixels, final int width, final int height, final File file)
+    {
+        final GcSnapshotArchive l_archive = getArchive();
+        return submit(new Callable<File>()
+        {
+            @Override
+            public File call() throws IOException
+            {
+                try
+                {
+                    final int[] l_pixels = getArray(pixels, width * height);
+                    if (l_archive != null)
+                    {
+                        return writeArchive(l_archive, l_pixels, width, height, file);
+                    }
+                    return writePng(wrap(l_pixels, width, height), file);
+                }
+                finally
+                {
+                    releaseBuffer(pixels);
+                }
+            }
+        });
+    }
+
+    /**
+     * Store a snapshot in the background: in the snapshot archive if one is configured, otherwise as PNG file. The
+     * caller must not modify the image any more.
+     *
+     * @see #snapshot(IntBuffer, int, int, File)
+     */
+    public static Future<File> snapshot(final BufferedImage image, final File file)
+    {
+        final GcSnapshotArchive l_archive = getArchive();
+        if (l_archive == null)
+        {
+            return write(image, file);
+        }
+
+        return submit(new Callable<File>()
+        {
+            @Override
+            public File call() throws IOException
+            {
+                final int l_width = image.getWidth();
+                final int l_height = image.getHeight();
+                return writeArchive(l_archive, image.getRGB(0, 0, l_width, l_height, null, 0, l_width), l_width, l_height, file);
+            }
+        });
+    }
+
+    /**
+     * Write the given image as PNG file in the background, regardless of the snapshot archive. The caller must not
+     * modify the image any more.
+     */
+    public static Future<File> write(final BufferedImage image, final File file)
+    {
+        return submit(new Callable<File>()
+        {
+            @Override
+            public File call() throws IOException
+            {
+                return writePng(image, file);
+            }
+        });
+    }
+
+    /**
+     * Wait until all pending snapshots are written. Failures were already reported by the futures of the snapshots and
+     * are only logged here.
+     */
+    public static void flush()
+    {
+        for (Future<File> l_future : ms_pending)
+        {
+            try
+            {
+                l_future.get();
+            }
+            catch (InterruptedException e)
+            {
+                throw GcUtils.interrupted("waiting for pending snapshots", e);
+            }
+            catch (ExecutionException e)
+            {
+                System.out.println("Failed to write snapshot: " + e.getCause());
+            }
+        }
+    }
+
+    private static Future<File> submit(Callable<File> callable)
+    {
+        final FutureTask<File> l_task = new FutureTask<File>(callable)
+        {
+            @Override
+            protected void done()
+            {
+                ms_pending.remove(this);
+            }
+        };
+        ms_pending.add(l_task);
+        ms_executor.execute(l_task);
+        return l_task;
+    }
+
+    /**
+     * Store snapshots in the given archive instead of PNG files, <code>null</code> switches back to PNG files. The
+     * previous archive is closed after all pending snapshots are written. The default is given by the system property
+     * {@value #ARCHIVE_PROPERTY}.
+     *
+     * @throws GcException Thrown if the archive cannot be opened.
+     */
+    public static void setArchive(File archive)
+    {
+        flush();
+        synchronized (ms_archiveLock)
+        {
+            closeArchive();
+            ms_archiveInitialized = true;
+            if (archive != null)
+            {
+                try
+                {
+                    ms_archive = new GcSnapshotArchive(archive);
+                }
+                catch (IOException e)
+                {
+                    throw new GcException("Failed to open snapshot archive " + archive.getAbsolutePath(), e);
+                }
+            }
+        }
+    }
+
+    private static GcSnapshotArchive getArchive()
+    {
+        synchronized (ms_archiveLock)
+        {
+            if (!ms_archiveInitialized)
+            {
+                final String l_archive = System.getProperty(ARCHIVE_PROPERTY);
+                setArchive(l_archive == null || l_archive.isEmpty() ? null : new File(l_archive));
+            }
+            return ms_archive;
+        }
+    }
+
+    private static void closeArchive()
+    {
+        if (ms_archive != null)
+        {
+            try
+            {
+                ms_archive.close();
+            }
+            catch (IOException e)
+            {
+                System.out.println("Failed to close snapshot archive: " + e);
+            }
+            ms_archive = null;
+        }
+    }
+
+    /**
+     * @return The array backing the given buffer, or a copy of the pixels if the buffer has no accessible array. Only
+     *         the first <code>size</code> elements are pixels, pooled arrays may be larger.
+     */
+    private static int[] getArray(IntBuffer buffer, int size)
+    {
+        if (buffer.hasArray() && buffer.arrayOffset() == 0)
+        {
+            return buffer.array();
+        }
+
+        final int[] l_pixels = new int[size];
+        buffer.position(0);
+        buffer.get(l_pixels);
+        return l_pixels;
+    }
+
+    /**
+     * @return An ARGB image using the given array as its raster, without copying the pixels.
+     */
+    private static BufferedImage wrap(int[] pixels, int width, int height)
+    {
+        final DirectColorModel l_model = (DirectColorModel)ColorModel.getRGBdefault();
+        final DataBufferInt l_data = new DataBufferInt(pixels, width * height);
+        final WritableRaster l_raster = Raster.createPackedRaster(l_data, width, height, width, l_model.getMasks(), null);
+        return new BufferedImage(l_model, l_raster, false, null);
+    }
+
+    private static File writeArchive(GcSnapshotArchive archive, int[] pixels, int width, int height, File file) throws IOException
+    {
+        archive.add(file.getPath(), pixels, width, height);
+        return archive.getFile();
+    }
+
+    private static File writePng(BufferedImage image, File file) throws IOException
+    {
+        if (!ImageIO.write(image, "png", file))
+        {
+            throw new IOException("No PNG writer available");
+        }
+        System.out.println("Snapshot saved to : " + file.getAbsolutePath());
+        return file;
+    }
+
+    private static void releaseBuffer(IntBuffer buffer)
+    {
+        if (ms_pool.size() < POOL_CAPACITY)
+        {
+            ms_pool.offer(buffer);
+        }
+    }
+}
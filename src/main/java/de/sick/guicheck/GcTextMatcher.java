@@ -0,0 +1,107 @@
+// Copyright 2013 SICK AG. All rights reserved.
+package de.sick.guicheck;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A precompiled combination of startsWith and matches string comparison as done by
+ * {@link GcUtils#startsWithOrMatches(String, String)}. Create a matcher once and use it for all comparisons of a
+ * lookup, e.g. for all windows or components within an evaluation loop.
+ * <p>
+ * The regular expression is compiled lazily on the first comparison which does not succeed with startsWith. Compiled
+ * patterns are shared via a bounded cache which drops the least recently used pattern.
+ *
+ * @author agent (created)
+ */
+public final class GcTextMatcher
+{
+    private static final int PATTERN_CACHE_SIZE = 256;
+
+    private static final Map<String, Pattern> PATTERN_CACHE = Collections.synchronizedMap(new LinkedHashMap<String, Pattern>(16, 0.75f, true)
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest)
+        {
+            return size() > PATTERN_CACHE_SIZE;
+        }
+    });
+
+    private final String m_text;
+    private Pattern m_pattern;
+
+    private GcTextMatcher(String text)
+    {
+        m_text = text;
+    }
+
+    /**
+     * @param text The start or regular expression to compare with. <code>null</code> only matches <code>null</code>.
+     */
+    public static GcTextMatcher of(String text)
+    {
+        return new GcTextMatcher(text);
+    }
+
+    /**
+     * @return The text this matcher compares with.
+     */
+    public String getText()
+    {
+        return m_text;
+    }
+
+    /**
+     * @return <code>true</code> if the given string starts with or matches the text of this matcher.
+     * @see GcUtils#startsWithOrMatches(String, String)
+     */
+    public boolean matches(String s)
+    {
+        if (s == null)
+        {
+            return m_text == null;
+        }
+
+        if (m_text == null)
+        {
+            return false;
+        }
+
+        if (s.startsWith(m_text))
+        {
+            return true;
+        }
+
+        if (m_pattern == null)
+        {
+            m_pattern = getPattern(m_text);
+        }
+
+        return m_pattern.matcher(s).matches();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.valueOf(m_text);
+    }
+
+    /**
+     * @return The compiled pattern for the given regular expression, taken from the cache if possible.
+     */
+    static Pattern getPattern(String regex)
+    {
+        Pattern l_pattern = PATTERN_CACHE.get(regex);
+        if (l_pattern == null)
+        {
+            l_pattern = Pattern.compile(regex);
+            PATTERN_CACHE.put(regex, l_pattern);
+        }
+
+        return l_pattern;
+    }
+}
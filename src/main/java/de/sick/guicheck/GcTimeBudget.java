@@ -0,0 +1,120 @@
+// Copyright 2013 SICK AG. All rights reserved.
+package de.sick.guicheck;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A time budget for a single test. All waits of GUIcheck (evaluations, round trips through the windowing thread, idle
+ * detection) end at the latest when the budget is exhausted and report this with a {@link GcException}. Without a
+ * budget the waits are only limited by their own timeouts.
+ * <p>
+ * The budget belongs to the thread which started it and is inherited by threads started by this thread afterwards.
+ * Tests running in parallel threads thus have budgets of their own.
+ *
+ * <pre>
+ * &#064;Before
+ * public void setUp()
+ * {
+ *     GcTimeBudget.start(30000);
+ * }
+ *
+ * &#064;After
+ * public void tearDown()
+ * {
+ *     GcTimeBudget.clear();
+ * }
+ * </pre>
+ *
+ * @author agent (created)
+ */
+public final class GcTimeBudget
+{
+    /**
+     * The budget of the current thread or <code>null</code> if there is none.
+     */
+    private static final InheritableThreadLocal<GcTimeBudget> ms_current = new InheritableThreadLocal<GcTimeBudget>();
+
+    private final long m_millis;
+    private final long m_deadline;
+
+    private GcTimeBudget(long millis)
+    {
+        m_millis = millis;
+        m_deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * Start a new budget of the given time in milliseconds for the current thread. A running budget is replaced.
+     */
+    public static void start(long millis)
+    {
+        ms_current.set(new GcTimeBudget(millis));
+    }
+
+    /**
+     * Remove the budget of the current thread.
+     */
+    public static void clear()
+    {
+        ms_current.remove();
+    }
+
+    /**
+     * @return <code>true</code> if there is a budget and it is exhausted.
+     */
+    public static boolean isExhausted()
+    {
+        final GcTimeBudget l_budget = ms_current.get();
+        return l_budget != null && l_budget.m_deadline - System.nanoTime() <= 0;
+    }
+
+    /**
+     * @return The given timeout in milliseconds limited to the remaining budget.
+     */
+    public static long limit(long timeout)
+    {
+        final GcTimeBudget l_budget = ms_current.get();
+        if (l_budget == null)
+        {
+            return timeout;
+        }
+
+        return Math.max(0, Math.min(timeout, TimeUnit.NANOSECONDS.toMillis(l_budget.m_deadline - System.nanoTime())));
+    }
+
+    /**
+     * @return The deadline in terms of {@link System#nanoTime()} for a wait of the given timeout in milliseconds,
+     *         limited to the remaining budget.
+     */
+    public static long deadline(long timeout)
+    {
+        final long l_now = System.nanoTime();
+        final long l_deadline = l_now + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        final GcTimeBudget l_budget = ms_current.get();
+        return (l_budget != null && l_budget.m_deadline - l_deadline < 0) ? l_budget.m_deadline : l_deadline;
+    }
+
+    /**
+     * @param activity Describes what the caller is waiting for.
+     * @throws GcException Thrown if the budget is exhausted.
+     */
+    public static void check(String activity)
+    {
+        check(activity, null);
+    }
+
+    /**
+     * @param activity Describes what the caller is waiting for.
+     * @param cause The reason of the wait, e.g. the last failed check, may be <code>null</code>.
+     * @throws GcException Thrown if the budget is exhausted.
+     */
+    public static void check(String activity, Throwable cause)
+    {
+        final GcTimeBudget l_budget = ms_current.get();
+        if (l_budget != null && l_budget.m_deadline - System.nanoTime() <= 0)
+        {
+            throw new GcException("Time budget of " + l_budget.m_millis + " millis exhausted while " + activity, cause);
+        }
+    }
+}
@@ -1,6 +1,9 @@
 // Copyright 2013 SICK AG. All rights reserved.
 package de.sick.guicheck;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Utilities for developers using GUIcheck
@@ -11,6 +14,11 @@ public final class GcUtils
 {
     private static final int MAX_NUMBER_OF_THREADS = 128;
 
+    /**
+     * The upper limit of the delay between two evaluations, the delay is doubled after each try.
+     */
+    private static final long MAX_EVALUATION_DELAY = 200;
+
     private GcUtils()
     {
         // Prevent instantiation
@@ -42,13 +50,17 @@ public final class GcUtils
             return false;
         }
 
-        return s1.startsWith(s2) || s1.matches(s2);
+        // Use the cached pattern instead of String.matches which compiles the expression on every call
+        return s1.startsWith(s2) || GcTextMatcher.getPattern(s2).matcher(s1).matches();
     }
 
     /**
      * Sets the current thread to sleep. Use this method with care because InterruptedExceptions interrupt the sleep but
      * are not re-thrown.
+     *
+     * @deprecated Use {@link #sleep(long)}, which lets tests be cancelled via interrupts.
      */
+    @Deprecated
     public static void sleepAndIgnoreInterrupts(int millis)
     {
         try
@@ -62,6 +74,108 @@ public final class GcUtils
         }
     }
 
+    /**
+     * Sets the current thread to sleep for the given time, limited to the remaining {@link GcTimeBudget}.
+     *
+     * @throws GcException Thrown if the thread is interrupted. The interrupt flag of the thread stays set.
+     */
+    public static void sleep(long millis)
+    {
+        try
+        {
+            Thread.sleep(GcTimeBudget.limit(millis));
+        }
+        catch (InterruptedException e)
+        {
+            throw interrupted("sleeping", e);
+        }
+    }
+
+    /**
+     * Wait for the given latch, limited to the remaining {@link GcTimeBudget}.
+     *
+     * @return <code>true</code> if the count of the latch reached zero, <code>false</code> if the timeout expired.
+     * @throws GcException Thrown if the thread is interrupted. The interrupt flag of the thread stays set.
+     */
+    public static boolean await(CountDownLatch latch, long millis)
+    {
+        try
+        {
+            return latch.await(GcTimeBudget.limit(millis), TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            throw interrupted("waiting", e);
+        }
+    }
+
+    /**
+     * Restore the interrupt flag of the current thread and create the exception cancelling the current wait.
+     *
+     * @param activity Describes what the thread was doing when it got interrupted.
+     */
+    public static GcException interrupted(String activity, InterruptedException e)
+    {
+        Thread.currentThread().interrupt();
+        return new GcException("Interrupted while " + activity, e);
+    }
+
+    /**
+     * Evaluate the given evaluator until it succeeds or the timeout expires. Retries are only done if the evaluator
+     * throws a {@link GcAssertException}. The delay between two tries starts with the given delay and is doubled after
+     * each try up to a fixed limit (or the initial delay if it is larger). A random jitter avoids running in lockstep
+     * with periodic work of the application.
+     *
+     * @param timeout The time in milliseconds after which the last {@link GcAssertException} is thrown.
+     * @param delay The initial delay in milliseconds between two tries.
+     * @param idleWait Called after each delay, usually waits for the windowing thread to become idle.
+     * @throws GcException Thrown if the {@link GcTimeBudget} is exhausted or the thread is interrupted.
+     */
+    public static <T> T eval(IEvaluator<T> e, long timeout, long delay, Runnable idleWait)
+    {
+        return eval(e, timeout, delay, 1, idleWait);
+    }
+
+    /**
+     * Evaluate the given evaluator like {@link #eval(IEvaluator, long, long, Runnable)}, but try at least the given
+     * number of times even if the timeout expired before. This keeps the meaning of a number of retries, e.g. retries
+     * without delay only wait for the windowing thread to become idle.
+     *
+     * @param minTries The minimum number of tries, only an exhausted {@link GcTimeBudget} ends the evaluation earlier.
+     */
+    public static <T> T eval(IEvaluator<T> e, long timeout, long delay, int minTries, Runnable idleWait)
+    {
+        final long l_deadline = GcTimeBudget.deadline(timeout);
+        final long l_maxDelay = Math.max(MAX_EVALUATION_DELAY, delay);
+        long l_delay = Math.max(1, delay);
+
+        for (int l_tries = 1;; l_tries++)
+        {
+            try
+            {
+                return e.eval();
+            }
+            catch (GcAssertException ex)
+            {
+                final long l_remainingNanos = l_deadline - System.nanoTime();
+                if (l_remainingNanos <= 0)
+                {
+                    GcTimeBudget.check("evaluating: " + ex.getMessage(), ex);
+                    if (l_tries >= minTries)
+                    {
+                        throw ex;
+                    }
+                }
+
+                final long l_remaining = Math.max(0, TimeUnit.NANOSECONDS.toMillis(l_remainingNanos) + 1);
+                final long l_sleep = delay == 0 ? 0 : l_delay - l_delay / 4 + ThreadLocalRandom.current().nextLong(l_delay / 2 + 1);
+                sleep(l_tries < minTries ? l_sleep : Math.min(l_remaining, l_sleep));
+                idleWait.run();
+                l_delay = Math.min(l_delay * 2, l_maxDelay);
+            }
+        }
+    }
+
     /**
      * @return The name of the getter method for the given property using Java Bean style.
      */
@@ -82,11 +196,62 @@ public final class GcUtils
         return l_sb.toString();
     }
 
+    /**
+     * @return The name of the setter method for the given property using Java Bean style.
+     */
+    public static String getPropertySetter(String property)
+    {
+        StringBuffer l_sb = new StringBuffer("set");
+
+        if (property.length() > 0)
+        {
+            l_sb.append(property.substring(0, 1).toUpperCase());
+
+            if (property.length() > 1)
+            {
+                l_sb.append(property.substring(1));
+            }
+        }
+
+        return l_sb.toString();
+    }
+
+    /**
+     * @return The message describing the mismatch or <code>null</code> if the actual value meets the expectation.
+     */
+    public static String checkPropertyValue(String property, Object expected, Object actual, boolean expectedResult)
+    {
+        if ((expected == actual || (expected != null && expected.equals(actual))) == expectedResult)
+        {
+            return null;
+        }
+
+        final StringBuilder l_sb = new StringBuilder("Unexpected value of ");
+        l_sb.append(property).append(": ").append(expectedResult ? "Expected: " : "Not expected: ").append(expected).append(", Actual: ").append(actual);
+        return l_sb.toString();
+    }
+
     public interface IEvaluator<T>
     {
         T eval();
     }
 
+    /**
+     * Strategies to detect that the windowing thread became idle.
+     */
+    public enum IdleMode
+    {
+        /**
+         * Ask the toolkit for pending work and return as soon as there is nothing left to do.
+         */
+        EVENT_DRIVEN,
+
+        /**
+         * Run a fixed number of round trips through the windowing thread and sleep after each of them.
+         */
+        SLEEP
+    }
+
     /**
      * Wait for a thread given by name.
      * <p>
@@ -110,7 +275,7 @@ public final class GcUtils
         }
         catch (InterruptedException e)
         {
-            throw new GcException("Interrupted while waiting for thread " + name + ".");            
+            throw interrupted("waiting for thread " + name + ".", e);
         }
     }
 
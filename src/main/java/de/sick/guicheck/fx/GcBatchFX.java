@@ -0,0 +1,236 @@
+// Copyright 2013 SICK AG. All rights reserved.
+package de.sick.guicheck.fx;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.scene.Node;
+
+import de.sick.guicheck.GcAssertException;
+import de.sick.guicheck.GcUtils;
+
+/**
+ * A batch of node lookups and property checks which are evaluated together in a single round trip to the windowing
+ * thread. This reads the scene graph in the correct thread and avoids a round trip per check.
+ * <p>
+ * The batch is evaluated with retries like a single check. All mismatches of the last try are reported together.
+ *
+ * <pre>
+ * l_stage.batch()
+ *     .propertyIs(&quot;title&quot;, &quot;My title&quot;)
+ *     .propertyIs(&quot;#text1&quot;, &quot;text&quot;, &quot;a&quot;)
+ *     .treeVisibleIs(&quot;#button8&quot;, true)
+ *     .run();
+ * </pre>
+ *
+ * @author agent (created)
+ */
+public class GcBatchFX
+{
+    /**
+     * A single entry of the batch. Entries are called in the windowing thread.
+     */
+    private interface IEntry
+    {
+        /**
+         * @return The message describing the mismatch or <code>null</code> if the check passed.
+         */
+        String check(GcBatchResultFX result);
+    }
+
+    private final GcComponentFX<?> m_component;
+    private final List<IEntry> m_entries = new ArrayList<IEntry>();
+
+    GcBatchFX(GcComponentFX<?> component)
+    {
+        m_component = component;
+    }
+
+    /**
+     * Find the first child {@link Node} for the given CSS selector. The node can be retrieved from the result via
+     * {@link GcBatchResultFX#node(String)}.
+     */
+    public GcBatchFX node(final String selector)
+    {
+        m_entries.add(new IEntry()
+        {
+            @Override
+            public String check(GcBatchResultFX result)
+            {
+                return lookup(selector, result) == null ? "Cannot find node for selector: " + selector : null;
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Check if the given property of the wrapped component has the given value.
+     */
+    public <TT> GcBatchFX propertyIs(final String property, final TT value)
+    {
+        return addPropertyCheck(null, property, value, true);
+    }
+
+    /**
+     * Check if the given property of the wrapped component does not have the given value.
+     */
+    public <TT> GcBatchFX propertyIsNot(final String property, final TT value)
+    {
+        return addPropertyCheck(null, property, value, false);
+    }
+
+    /**
+     * Check if the given property of the node given via CSS selector has the given value.
+     */
+    public <TT> GcBatchFX propertyIs(final String selector, final String property, final TT value)
+    {
+        return addPropertyCheck(selector, property, value, true);
+    }
+
+    /**
+     * Check if the given property of the node given via CSS selector does not have the given value.
+     */
+    public <TT> GcBatchFX propertyIsNot(final String selector, final String property, final TT value)
+    {
+        return addPropertyCheck(selector, property, value, false);
+    }
+
+    /**
+     * Check the visibility of the node given via CSS selector and all of its parents.
+     *
+     * @see GcUtilsFX#treeVisibleIs(Node, boolean)
+     */
+    public GcBatchFX treeVisibleIs(final String selector, final boolean visible)
+    {
+        m_entries.add(new IEntry()
+        {
+            @Override
+            public String check(GcBatchResultFX result)
+            {
+                final Node l_node = lookup(selector, result);
+                if (l_node == null)
+                {
+                    return "Cannot find node for selector: " + selector;
+                }
+
+                final boolean l_visible = GcUtilsFX.isTreeVisible(l_node);
+                if (l_visible != visible)
+                {
+                    return "Unexpected value of treeVisible for " + selector + ": Expected: " + visible + ", Actual: " + l_visible;
+                }
+                return null;
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Evaluate all entries of the batch in the windowing thread.
+     *
+     * @return The result containing the nodes found by the lookups of this batch.
+     * @throws GcAssertException Thrown if at least one entry still fails after all retries. The message lists all
+     *             failed entries.
+     */
+    public GcBatchResultFX run()
+    {
+        return GcUtilsFX.eval(new GcUtils.IEvaluator<GcBatchResultFX>()
+        {
+            @Override
+            public GcBatchResultFX eval()
+            {
+                final GcBatchResultFX l_result = new GcBatchResultFX();
+                final List<String> l_mismatches = new ArrayList<String>();
+                final RuntimeException[] l_failure = new RuntimeException[1];
+
+                GcUtilsFX.runLaterAndWait(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            for (IEntry l_entry : m_entries)
+                            {
+                                final String l_mismatch = l_entry.check(l_result);
+                                if (l_mismatch != null)
+                                {
+                                    l_mismatches.add(l_mismatch);
+                                }
+                            }
+                        }
+                        catch (RuntimeException e)
+                        {
+                            // Hand the exception over to the test thread
+                            l_failure[0] = e;
+                        }
+                    }
+                });
+
+                if (l_failure[0] != null)
+                {
+                    throw l_failure[0];
+                }
+
+                if (!l_mismatches.isEmpty())
+                {
+                    final StringBuilder l_sb = new StringBuilder();
+                    l_sb.append(l_mismatches.size()).append(" of ").append(m_entries.size()).append(" checks failed:");
+                    for (String l_mismatch : l_mismatches)
+                    {
+                        l_sb.append("\n  ").append(l_mismatch);
+                    }
+                    throw new GcAssertException(l_sb.toString());
+                }
+
+                return l_result;
+            }
+        });
+    }
+
+    private <TT> GcBatchFX addPropertyCheck(final String selector, final String property, final TT value, final boolean expectedResult)
+    {
+        m_entries.add(new IEntry()
+        {
+            @Override
+            public String check(GcBatchResultFX result)
+            {
+                final Object l_target;
+                if (selector == null)
+                {
+                    l_target = m_component.getFXComponent();
+                }
+                else
+                {
+                    l_target = lookup(selector, result);
+                    if (l_target == null)
+                    {
+                        return "Cannot find node for selector: " + selector;
+                    }
+                }
+
+                final Object l_value = GcComponentFX.getPropertyValue(l_target, property, value);
+                final String l_mismatch = GcUtils.checkPropertyValue(property, value, l_value, expectedResult);
+                return (l_mismatch == null || selector == null) ? l_mismatch : selector + ": " + l_mismatch;
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Lookup the node for the given selector once per evaluation.
+     */
+    private Node lookup(String selector, GcBatchResultFX result)
+    {
+        Node l_node = result.getNode(selector);
+        if (l_node == null)
+        {
+            l_node = GcSceneIndexFX.lookup(m_component.getNode(), selector);
+            if (l_node != null)
+            {
+                result.putNode(selector, l_node);
+            }
+        }
+
+        return l_node;
+    }
+}
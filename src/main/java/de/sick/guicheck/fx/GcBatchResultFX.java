@@ -0,0 +1,49 @@
+// Copyright 2013 SICK AG. All rights reserved.
+package de.sick.guicheck.fx;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javafx.scene.Node;
+
+import de.sick.guicheck.GcException;
+
+/**
+ * The result of a successfully evaluated {@link GcBatchFX}. It contains the nodes found by the lookups of the batch.
+ *
+ * @author agent (created)
+ */
+public class GcBatchResultFX
+{
+    private final Map<String, Node> m_nodes = new HashMap<String, Node>();
+
+    GcBatchResultFX()
+    {
+    }
+
+    /**
+     * Return the node found for the given CSS selector.
+     *
+     * @throws GcException Thrown if the selector was not part of the batch.
+     */
+    public GcNodeFX node(String selector)
+    {
+        final Node l_node = m_nodes.get(selector);
+        if (l_node == null)
+        {
+            throw new GcException("The selector was not part of the batch: " + selector);
+        }
+
+        return new GcNodeFX(l_node);
+    }
+
+    Node getNode(String selector)
+    {
+        return m_nodes.get(selector);
+    }
+
+    void putNode(String selector, Node node)
+    {
+        m_nodes.put(selector, node);
+    }
+}
@@ -1,19 +1,20 @@
 // Copyright 2013 SICK AG. All rights reserved.
 package de.sick.guicheck.fx;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.File;
+import java.lang.invoke.MethodHandle;
 import java.util.Set;
 
 import javafx.scene.Node;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuBar;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 import javafx.stage.Stage;
 
 import de.sick.guicheck.GcAssertException;
-import de.sick.guicheck.GcException;
+import de.sick.guicheck.GcImageCompare;
+import de.sick.guicheck.GcPropertyAccessor;
 import de.sick.guicheck.GcUtils;
 import de.sick.guicheck.GcUtils.IEvaluator;
 
@@ -27,25 +28,6 @@ import de.sick.guicheck.GcUtils.IEvaluator;
  */
 abstract class GcComponentFX<T extends GcComponentFX<T>>
 {
-
-    /**
-     * Used to convert a wrapper class to its corresponding primitive type.
-     * 
-     * If this method is used at several places. Consider to use Guava or Apache commons-lang
-     */
-    private final static Map<Class<?>, Class<?>> WRAPPER_TO_PRIMITIVE = new HashMap<Class<?>, Class<?>>();
-    static
-    {
-        WRAPPER_TO_PRIMITIVE.put(Boolean.class, boolean.class);
-        WRAPPER_TO_PRIMITIVE.put(Byte.class, byte.class);
-        WRAPPER_TO_PRIMITIVE.put(Short.class, short.class);
-        WRAPPER_TO_PRIMITIVE.put(Character.class, char.class);
-        WRAPPER_TO_PRIMITIVE.put(Integer.class, int.class);
-        WRAPPER_TO_PRIMITIVE.put(Long.class, long.class);
-        WRAPPER_TO_PRIMITIVE.put(Float.class, float.class);
-        WRAPPER_TO_PRIMITIVE.put(Double.class, double.class);
-    }
-
     /**
      * @return The JavaFX {@link Node} wrapped by this component.
      */
@@ -64,7 +46,7 @@ abstract class GcComponentFX<T extends GcComponentFX<T>>
             @Override
             public Node eval()
             {
-                Node l_found = getNode().lookup(selector);
+                Node l_found = GcSceneIndexFX.lookup(getNode(), selector);
                 if (l_found != null)
                 {
                     return l_found;
@@ -79,28 +61,15 @@ abstract class GcComponentFX<T extends GcComponentFX<T>>
     {
         return GcUtilsFX.eval(new GcUtils.IEvaluator<Node>()
         {
-            @SuppressWarnings("unchecked")
             @Override
             public Node eval()
             {
-                Set<Node> l_nodes = getNode().lookupAll(selector);
+                Set<Node> l_nodes = GcSceneIndexFX.lookupAll(getNode(), selector);
 
                 for (Node l_found : l_nodes)
                 {
-                    TT l_value;
-                    try
-                    {
-                        // Get the property getter method ...
-                        final Class<?> l_clazz = expected == null ? null : expected.getClass();
-                        final Method l_method = l_found.getClass().getMethod(getPropertyGetter(property, l_clazz), (Class<?>[])null);
-
-                        // ... get the value of the property ...
-                        l_value = (TT)l_method.invoke(l_found, (Object[])null);
-                    }
-                    catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException | NoSuchMethodException | SecurityException e)
-                    {
-                        throw new GcException("Failed to access property " + property, e);
-                    }
+                    // Get the value of the property ...
+                    final Object l_value = getPropertyValue(l_found, property, expected);
 
                     // ... and check it against the expected value
                     if (expected == l_value || (expected != null && expected.equals(l_value)))
@@ -139,93 +108,63 @@ abstract class GcComponentFX<T extends GcComponentFX<T>>
     }
 
     /**
-     * @return The name of the getter method for the given property using Java Bean style.
+     * Duplicate method
+     * 
+     * @see GcContextMenuFX#propertyIs(Object, String, Object, boolean)
      */
-    static String getPropertyGetter(String property, Class<?> clazz)
+    @SuppressWarnings("unchecked")
+    final <TT> T propertyIs(final Object obj, final String property, final TT value, final boolean expectedResult)
     {
-        StringBuffer l_sb = new StringBuffer((clazz == Boolean.class || clazz == boolean.class) ? "is" : "get");
+        GcPropertyWaitFX.propertyIs(obj, property, value, expectedResult);
 
-        if (property.length() > 0)
-        {
-            l_sb.append(property.substring(0, 1).toUpperCase());
-
-            if (property.length() > 1)
-            {
-                l_sb.append(property.substring(1));
-            }
-        }
-
-        return l_sb.toString();
+        // Return this instance again according to the fluent API style
+        return (T)this;
     }
 
     /**
-     * @return The name of the setter method for the given property using Java Bean style.
+     * Read the value of the given property via its getter. The type of the expected value selects between the "get" and
+     * "is" prefix.
      */
-    static String getPropertySetter(String property)
+    static Object getPropertyValue(final Object obj, final String property, final Object expected)
     {
-        StringBuffer l_sb = new StringBuffer("set");
-
-        if (property.length() > 0)
-        {
-            l_sb.append(property.substring(0, 1).toUpperCase());
-
-            if (property.length() > 1)
-            {
-                l_sb.append(property.substring(1));
-            }
-        }
+        return GcPropertyAccessor.getValue(obj, property, expected == null ? null : expected.getClass());
+    }
 
-        return l_sb.toString();
+    /**
+     * Create a batch which collects lookups and property checks and evaluates all of them in a single round trip to the
+     * windowing thread.
+     */
+    public GcBatchFX batch()
+    {
+        return new GcBatchFX(this);
     }
 
     /**
-     * Duplicate method
-     * 
-     * @see GcContextMenuFX#propertyIs(Object, String, Object, boolean)
+     * Compare a snapshot of the node with the golden image. The snapshot is taken in the windowing thread, the
+     * comparison runs in the calling thread. This method follows the fluent API style.
+     *
+     * @see GcImageCompare#assertMatches(File, int[], int, int)
      */
     @SuppressWarnings("unchecked")
-    final <TT> T propertyIs(final Object obj, final String property, final TT value, final boolean expectedResult)
+    public final T imageMatches(File golden, GcImageCompare compare)
     {
-        try
+        final int[][] l_pixels = new int[1][];
+        final int[] l_size = new int[2];
+        GcUtilsFX.runLaterAndWait(new Runnable()
         {
-            // Get the property getter method ...
-            final Class<?> l_clazz = value == null ? null : value.getClass();
-            final Method l_method = obj.getClass().getMethod(getPropertyGetter(property, l_clazz), (Class<?>[])null);
-
-            GcUtilsFX.eval(new GcUtils.IEvaluator<Void>()
+            @Override
+            public void run()
             {
-                @Override
-                public Void eval()
-                {
-                    TT l_value;
-                    try
-                    {
-                        // ... get the value of the property ...
-                        l_value = (TT)l_method.invoke(obj, (Object[])null);
-                    }
-                    catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e)
-                    {
-                        throw new GcException("Failed to access property " + property, e);
-                    }
-
-                    // ... and check it against the expected value
-                    if ((value == l_value || (value != null && value.equals(l_value))) != expectedResult)
-                    {
-                        final StringBuilder l_sb = new StringBuilder("Unexpected value of ");
-                        l_sb.append(property).append(": ").append(expectedResult ? "Expected: " : "Not expected: ").append(value).append(", Actual: ").append(l_value);
-                        throw new GcAssertException(l_sb.toString());
-                    }
-                    return null;
-                }
-            });
+                final WritableImage l_image = getNode().snapshot(null, null);
+                l_size[0] = (int)l_image.getWidth();
+                l_size[1] = (int)l_image.getHeight();
+                l_pixels[0] = new int[l_size[0] * l_size[1]];
+                l_image.getPixelReader().getPixels(0, 0, l_size[0], l_size[1], PixelFormat.getIntArgbInstance(), l_pixels[0], 0, l_size[0]);
+            }
+        });
 
-            // Return this instance again according to the fluent API style
-            return (T)this;
-        }
-        catch (NoSuchMethodException e)
-        {
-            throw new GcException("Failed to access property " + property, e);
-        }
+        compare.assertMatches(golden, l_pixels[0], l_size[0], l_size[1]);
+        return (T)this;
     }
 
     /**
@@ -247,53 +186,25 @@ abstract class GcComponentFX<T extends GcComponentFX<T>>
     @SuppressWarnings("unchecked")
     private final <TT> T ensurePropertyIs(final Object obj, final String property, final TT value)
     {
-        try
-        {
-            // Get the property setter method ...
-            final Method l_method = getSetter(obj, property, value);
+        // Get the property setter ...
+        final MethodHandle l_setter = GcPropertyAccessor.getSetter(obj.getClass(), property, value == null ? null : value.getClass());
 
-            GcUtilsFX.eval(new GcUtils.IEvaluator<Void>()
+        GcUtilsFX.eval(new GcUtils.IEvaluator<Void>()
+        {
+            @Override
+            public Void eval()
             {
-                @Override
-                public Void eval()
-                {
-                    try
-                    {
-                        // ... set the value of the property ...
-                        l_method.invoke(obj, value);
-                    }
-                    catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e)
-                    {
-                        throw new GcException("Failed to set property " + property, e);
-                    }
-
-                    // ... and check if it is set correct
-                    propertyIs(property, value);
-                    return null;
-                }
-            });
+                // ... set the value of the property ...
+                GcPropertyAccessor.invokeSetter(l_setter, obj, property, value);
 
-            // Return this instance again according to the fluent API style
-            return (T)this;
-        }
-        catch (NoSuchMethodException e)
-        {
-            throw new GcException("Failed to set property " + property, e);
-        }
-    }
+                // ... and check if it is set correct
+                propertyIs(property, value);
+                return null;
+            }
+        });
 
-    private <TT> Method getSetter(final Object obj, final String property, final TT value) throws NoSuchMethodException
-    {
-        final Class<?> l_clazz = value == null ? null : value.getClass();
-        try
-        {
-            return obj.getClass().getMethod(getPropertySetter(property), l_clazz);
-        }
-        catch (NoSuchMethodException e)
-        {
-            // try primitive type
-            return obj.getClass().getMethod(getPropertySetter(property), WRAPPER_TO_PRIMITIVE.get(l_clazz));
-        }
+        // Return this instance again according to the fluent API style
+        return (T)this;
     }
 
     /**
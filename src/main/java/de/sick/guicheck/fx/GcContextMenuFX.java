@@ -1,7 +1,5 @@
 package de.sick.guicheck.fx;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 
 import javafx.application.Platform;
@@ -10,7 +8,6 @@ import javafx.scene.control.Menu;
 import javafx.scene.control.MenuItem;
 
 import de.sick.guicheck.GcAssertException;
-import de.sick.guicheck.GcException;
 import de.sick.guicheck.GcUtils;
 
 /**
@@ -144,48 +141,11 @@ public class GcContextMenuFX
      * 
      * @see GcComponentFX#propertyIs(Object, String, Object, boolean)
      */
-    @SuppressWarnings("unchecked")
     final <TT> GcContextMenuFX propertyIs(final Object obj, final String property, final TT value, final boolean expectedResult)
     {
-        try
-        {
-            // Get the property getter method ...
-            final Class<?> l_clazz = value == null ? null : value.getClass();
-            final Method l_method = obj.getClass().getMethod(GcComponentFX.getPropertyGetter(property, l_clazz), (Class<?>[])null);
-
-            GcUtilsFX.eval(new GcUtils.IEvaluator<Void>()
-            {
-                @Override
-                public Void eval()
-                {
-                    TT l_value;
-                    try
-                    {
-                        // ... get the value of the property ...
-                        l_value = (TT)l_method.invoke(obj, (Object[])null);
-                    }
-                    catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e)
-                    {
-                        throw new GcException("Failed to access property " + property, e);
-                    }
+        GcPropertyWaitFX.propertyIs(obj, property, value, expectedResult);
 
-                    // ... and check it against the expected value
-                    if ((value == l_value || (value != null && value.equals(l_value))) != expectedResult)
-                    {
-                        final StringBuilder l_sb = new StringBuilder("Unexpected value of ");
-                        l_sb.append(property).append(": ").append(expectedResult ? "Expected: " : "Not expected: ").append(value).append(", Actual: ").append(l_value);
-                        throw new GcAssertException(l_sb.toString());
-                    }
-                    return null;
-                }
-            });
-
-            // Return this instance again according to the fluent API style
-            return this;
-        }
-        catch (NoSuchMethodException e)
-        {
-            throw new GcException("Failed to access property " + property, e);
-        }
+        // Return this instance again according to the fluent API style
+        return this;
     }
 }
\ No newline at end of file
@@ -0,0 +1,66 @@
+// Copyright 2014 SICK AG. All rights reserved.
+package de.sick.guicheck.fx;
+
+import de.sick.guicheck.GcException;
+
+/**
+ * Configures JavaFX to run on the headless Monocle platform with the software rendering pipeline. No display (and no
+ * Xvfb) is needed in this mode. The robot, snapshots and the stage lookup work like on a real display.
+ * <p>
+ * Monocle is not part of the JRE, the <code>openjfx-monocle</code> artifact must be on the classpath. The Maven profile
+ * <code>headless</code> adds it and enables the headless mode for the tests.
+ *
+ * @author agent (created)
+ */
+final class GcHeadlessFX
+{
+    /**
+     * Set this system property to <code>true</code> to run all tests headless.
+     */
+    static final String HEADLESS_PROPERTY = "guicheck.headless";
+
+    private static final String MONOCLE_CLASS = "com.sun.glass.ui.monocle.MonocleApplication";
+
+    private GcHeadlessFX()
+    {
+        // Prevent instantiation
+    }
+
+    /**
+     * @return <code>true</code> if the headless mode is requested via system property.
+     */
+    static boolean isRequested()
+    {
+        return Boolean.getBoolean(HEADLESS_PROPERTY);
+    }
+
+    /**
+     * Select the headless platform and the software pipeline. Must be called before the JavaFX toolkit is started, the
+     * toolkit reads the properties only once.
+     *
+     * @param loader The classloader used to start the application.
+     * @throws GcException Thrown if Monocle is not on the classpath.
+     */
+    static void configure(ClassLoader loader)
+    {
+        try
+        {
+            Class.forName(MONOCLE_CLASS, false, loader);
+        }
+        catch (ClassNotFoundException e)
+        {
+            throw new GcException("Headless mode needs Monocle (org.testfx:openjfx-monocle) on the classpath", e);
+        }
+
+        System.setProperty("glass.platform", "Monocle");
+        System.setProperty("monocle.platform", "Headless");
+        System.setProperty("prism.order", "sw");
+        System.setProperty("prism.text", "t2k");
+
+        // AWT is only used for image conversion, keep it away from the missing display
+        if (System.getProperty("java.awt.headless") == null)
+        {
+            System.setProperty("java.awt.headless", "true");
+        }
+    }
+}
@@ -0,0 +1,194 @@
+// Copyright 2013 SICK AG. All rights reserved.
+package de.sick.guicheck.fx;
+
+import java.lang.reflect.Field;
+
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+
+import com.sun.javafx.stage.StageHelper;
+import com.sun.javafx.tk.TKPulseListener;
+import com.sun.javafx.tk.Toolkit;
+
+import de.sick.guicheck.GcTimeBudget;
+import de.sick.guicheck.GcUtils;
+
+/**
+ * Detects an idle JavaFX application thread without sleeping. The detector hooks into the pulses of the toolkit and
+ * checks after each round trip through the runLater queue whether a pulse is requested or a scene needs a layout pass.
+ * <p>
+ * The windowing thread is idle after two consecutive clean round trips. The second one makes sure that runnables posted
+ * while the first one was processed are executed as well.
+ *
+ * @author agent (created)
+ */
+final class GcIdleDetectorFX
+{
+    private static final int QUIET_ROUND_TRIPS = 2;
+
+    // Scenes with running animations request a pulse all the time, thus only wait for a limited number of pulses
+    private static final int MAX_PULSES = 3;
+    private static final int PULSE_TIMEOUT = 100;
+
+    private static final Object ms_pulseLock = new Object();
+    private static long ms_pulseCount;
+    private static boolean ms_installed;
+
+    /**
+     * Private flag in quantum toolkit which is set as long as a pulse is requested but not yet processed. The flag is
+     * optional, if it does not exist only the layout state of the scenes is checked.
+     */
+    private static final Field NEXT_PULSE_REQUESTED_FIELD = getNextPulseRequestedField();
+
+    /**
+     * The toolkit only keeps weak references to its pulse listeners, so keep a strong one here.
+     */
+    private static final TKPulseListener PULSE_LISTENER = new TKPulseListener()
+    {
+        @Override
+        public void pulse()
+        {
+            synchronized (ms_pulseLock)
+            {
+                ms_pulseCount++;
+                ms_pulseLock.notifyAll();
+            }
+        }
+    };
+
+    private GcIdleDetectorFX()
+    {
+        // Prevent instantiation
+    }
+
+    /**
+     * Wait until no pulse is pending, no scene needs a layout pass and the runLater queue is drained.
+     */
+    static void waitForIdle()
+    {
+        int l_quiet = 0;
+        int l_pulses = 0;
+        while (l_quiet < QUIET_ROUND_TRIPS && GcUtilsFX.isPlatformAlive())
+        {
+            final long l_pulseCount = getPulseCount();
+            final boolean[] l_busy = new boolean[1];
+            GcUtilsFX.runLaterAndWait(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    install();
+                    l_busy[0] = isPulsePending() || isAnySceneDirty();
+                }
+            });
+
+            if (l_busy[0] && l_pulses < MAX_PULSES)
+            {
+                l_quiet = 0;
+                l_pulses++;
+                awaitPulse(l_pulseCount);
+            }
+            else
+            {
+                l_quiet++;
+            }
+        }
+    }
+
+    /**
+     * Must be called in the windowing thread.
+     */
+    private static void install()
+    {
+        if (!ms_installed)
+        {
+            Toolkit.getToolkit().addPostSceneTkPulseListener(PULSE_LISTENER);
+            ms_installed = true;
+        }
+    }
+
+    private static long getPulseCount()
+    {
+        synchronized (ms_pulseLock)
+        {
+            return ms_pulseCount;
+        }
+    }
+
+    private static void awaitPulse(long pulseCount)
+    {
+        Toolkit.getToolkit().requestNextPulse();
+
+        final long l_timeout = GcTimeBudget.limit(PULSE_TIMEOUT);
+        final long l_end = System.currentTimeMillis() + l_timeout;
+        synchronized (ms_pulseLock)
+        {
+            long l_remaining = l_timeout;
+            while (ms_pulseCount == pulseCount && l_remaining > 0)
+            {
+                try
+                {
+                    ms_pulseLock.wait(l_remaining);
+                }
+                catch (InterruptedException e)
+                {
+                    throw GcUtils.interrupted("waiting for a pulse", e);
+                }
+                l_remaining = l_end - System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * Must be called in the windowing thread.
+     */
+    private static boolean isAnySceneDirty()
+    {
+        for (Stage l_stage : StageHelper.getStages())
+        {
+            final Scene l_scene = l_stage.getScene();
+            if (l_scene != null)
+            {
+                final Parent l_root = l_scene.getRoot();
+                if (l_root != null && l_root.isNeedsLayout())
+                {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isPulsePending()
+    {
+        if (NEXT_PULSE_REQUESTED_FIELD == null)
+        {
+            return false;
+        }
+
+        try
+        {
+            return NEXT_PULSE_REQUESTED_FIELD.getBoolean(Toolkit.getToolkit());
+        }
+        catch (IllegalArgumentException | IllegalAccessException e)
+        {
+            return false;
+        }
+    }
+
+    private static Field getNextPulseRequestedField()
+    {
+        try
+        {
+            final Field l_field = Class.forName("com.sun.javafx.tk.quantum.QuantumToolkit").getDeclaredField("nextPulseRequested");
+            l_field.setAccessible(true);
+            return l_field;
+        }
+        catch (ClassNotFoundException | NoSuchFieldException | SecurityException e)
+        {
+            return null;
+        }
+    }
+}
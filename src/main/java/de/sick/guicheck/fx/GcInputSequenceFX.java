@@ -0,0 +1,327 @@
+// Copyright 2014 SICK AG. All rights reserved.
+package de.sick.guicheck.fx;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.geometry.Bounds;
+import javafx.geometry.Point2D;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.MouseButton;
+
+import com.sun.javafx.robot.FXRobot;
+
+import de.sick.guicheck.GcAssertException;
+
+/**
+ * A sequence of input actions which is sent to the {@link FXRobot} back-to-back in a single run of the windowing thread
+ * by {@link #perform()}. In contrast to the single actions of the {@link GcRobotFX} there is only one wait for the
+ * windowing thread to become idle at the end of the sequence. The stage is checked for modal children before each
+ * action like for the single actions, so a modal stage opened by an action stops the rest of the sequence.
+ * <p>
+ * Coordinates of components are evaluated when the action is added to the sequence.
+ *
+ * <pre>
+ * robot().sequence().mouseMoveToCenter(field).mouseClick().keyType(&quot;Hello&quot;).keyType(KeyCode.ENTER).perform();
+ * </pre>
+ *
+ * @author agent (created)
+ */
+public class GcInputSequenceFX
+{
+    private final GcRobotFX m_owner;
+    private final FXRobot m_robot;
+    private final List<Runnable> m_actions = new ArrayList<Runnable>();
+
+    GcInputSequenceFX(GcRobotFX owner, FXRobot robot)
+    {
+        m_owner = owner;
+        m_robot = robot;
+    }
+
+    /**
+     * @see FXRobot#keyPress(KeyCode)
+     */
+    public GcInputSequenceFX keyPress(final KeyCode code)
+    {
+        m_actions.add(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                m_robot.keyPress(code);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * @see FXRobot#keyRelease(KeyCode)
+     */
+    public GcInputSequenceFX keyRelease(final KeyCode code)
+    {
+        m_actions.add(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                m_robot.keyRelease(code);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * @see FXRobot#keyPress(KeyCode)
+     * @see FXRobot#keyRelease(KeyCode)
+     */
+    public GcInputSequenceFX keyType(KeyCode... codes)
+    {
+        for (KeyCode l_code : codes)
+        {
+            keyPress(l_code);
+            keyRelease(l_code);
+        }
+        return this;
+    }
+
+    /**
+     * @see FXRobot#keyType(KeyCode, String)
+     */
+    public GcInputSequenceFX keyType(final KeyCode code, final String keyChar)
+    {
+        m_actions.add(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                m_robot.keyType(code, keyChar);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Type the given string on the keyboard. The component having the focus will get the resulting key events.
+     */
+    public GcInputSequenceFX keyType(String s)
+    {
+        for (char c : s.toCharArray())
+        {
+            final KeyCode l_code = KeyCode.getKeyCode(String.valueOf(c));
+            keyType(l_code == null ? KeyCode.UNDEFINED : l_code, Character.toString(c));
+        }
+        return this;
+    }
+
+    /**
+     * @see FXRobot#mouseWheel(int)
+     */
+    public GcInputSequenceFX mouseWheel(final int wheelAmt)
+    {
+        m_actions.add(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                m_robot.mouseWheel(wheelAmt);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Moves the mouse to the given point in the scene.
+     *
+     * @see FXRobot#mouseMove(int, int)
+     */
+    public GcInputSequenceFX mouseMove(final int x, final int y)
+    {
+        m_actions.add(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                m_robot.mouseMove(x, y);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Moves the mouse to the given point relative to the component.
+     *
+     * @see FXRobot#mouseMove(int, int)
+     */
+    public GcInputSequenceFX mouseMove(GcComponentFX<?> component, int x, int y)
+    {
+        final Point2D l_point = component.getNode().localToScene(x, y);
+        return mouseMove((int)l_point.getX(), (int)l_point.getY());
+    }
+
+    /**
+     * Moves the mouse to the center point of the given component.
+     *
+     * @see FXRobot#mouseMove(int, int)
+     */
+    public GcInputSequenceFX mouseMoveToCenter(GcComponentFX<?> component)
+    {
+        final Bounds l_bounds = component.getNode().getBoundsInLocal();
+        return mouseMove(component, (int)(l_bounds.getWidth() / 2), (int)(l_bounds.getHeight() / 2));
+    }
+
+    public GcInputSequenceFX mousePress()
+    {
+        return mousePress(MouseButton.PRIMARY, 1);
+    }
+
+    public GcInputSequenceFX mousePressSecondary()
+    {
+        return mousePress(MouseButton.SECONDARY, 1);
+    }
+
+    public GcInputSequenceFX mouseRelease()
+    {
+        return mouseRelease(MouseButton.PRIMARY, 1);
+    }
+
+    public GcInputSequenceFX mouseReleaseSecondary()
+    {
+        return mouseRelease(MouseButton.SECONDARY, 1);
+    }
+
+    /**
+     * Clicks the primary mouse button. Automatically adds mousePress and mouseRelease calls.
+     */
+    public GcInputSequenceFX mouseClick()
+    {
+        return mouseClick(MouseButton.PRIMARY, 1);
+    }
+
+    /**
+     * Clicks the secondary mouse button. Automatically adds mousePress and mouseRelease calls.
+     */
+    public GcInputSequenceFX mouseClickSecondary()
+    {
+        return mouseClick(MouseButton.SECONDARY, 1);
+    }
+
+    /**
+     * Double-clicks the primary mouse button. Automatically adds mousePress and mouseRelease calls.
+     */
+    public GcInputSequenceFX mouseDblClick()
+    {
+        return mouseClick(MouseButton.PRIMARY, 1).mouseClick(MouseButton.PRIMARY, 2);
+    }
+
+    /**
+     * Double-clicks the secondary mouse button. Automatically adds mousePress and mouseRelease calls.
+     */
+    public GcInputSequenceFX mouseDblClickSecondary()
+    {
+        return mouseClick(MouseButton.SECONDARY, 1).mouseClick(MouseButton.SECONDARY, 2);
+    }
+
+    /**
+     * @see FXRobot#mouseDrag(MouseButton)
+     */
+    public GcInputSequenceFX mouseDrag()
+    {
+        return mouseDrag(MouseButton.PRIMARY);
+    }
+
+    /**
+     * @see FXRobot#mouseDrag(MouseButton)
+     */
+    public GcInputSequenceFX mouseDragSecondary()
+    {
+        return mouseDrag(MouseButton.SECONDARY);
+    }
+
+    /**
+     * Send all actions of this sequence to the robot and wait once for the windowing thread to become idle. The
+     * sequence is empty afterwards and can be reused. An exception thrown by an event handler of the application stops
+     * the sequence and is rethrown in the calling thread.
+     *
+     * @return The robot this sequence belongs to.
+     * @throws GcAssertException Thrown if the stage is blocked by a modal child before an action.
+     */
+    public GcRobotFX perform()
+    {
+        if (GcUtilsFX.isPlatformAlive() && !m_actions.isEmpty())
+        {
+            final List<Runnable> l_actions = new ArrayList<Runnable>(m_actions);
+            m_actions.clear();
+            GcUtilsFX.runLaterAndWait(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for (Runnable l_action : l_actions)
+                    {
+                        // The robot ignores modality, events must not reach a stage blocked by a previous action
+                        m_owner.checkForModalChildStages();
+                        l_action.run();
+                    }
+                }
+            });
+            GcUtilsFX.waitForIdle();
+        }
+        m_actions.clear();
+        return m_owner;
+    }
+
+    private GcInputSequenceFX mousePress(final MouseButton button, final int clickCount)
+    {
+        m_actions.add(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                m_robot.mousePress(button, clickCount);
+            }
+        });
+        return this;
+    }
+
+    private GcInputSequenceFX mouseRelease(final MouseButton button, final int clickCount)
+    {
+        m_actions.add(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                m_robot.mouseRelease(button, clickCount);
+            }
+        });
+        return this;
+    }
+
+    private GcInputSequenceFX mouseClick(final MouseButton button, final int clickCount)
+    {
+        mousePress(button, clickCount);
+        mouseRelease(button, clickCount);
+        m_actions.add(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                m_robot.mouseClick(button, clickCount);
+            }
+        });
+        return this;
+    }
+
+    private GcInputSequenceFX mouseDrag(final MouseButton button)
+    {
+        m_actions.add(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                m_robot.mouseDrag(button);
+            }
+        });
+        return this;
+    }
+}
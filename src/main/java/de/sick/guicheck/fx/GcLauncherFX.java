@@ -0,0 +1,155 @@
+// Copyright 2014 SICK AG. All rights reserved.
+package de.sick.guicheck.fx;
+
+import java.util.ArrayList;
+
+import javafx.application.Application;
+import javafx.stage.Stage;
+
+import com.sun.javafx.application.ParametersImpl;
+import com.sun.javafx.stage.StageHelper;
+
+import de.sick.guicheck.GcException;
+
+/**
+ * Runs the life cycle of an {@link Application} on an already running toolkit. {@link Application#launch(String...)}
+ * may only be called once per JVM, this launcher does the same steps as the JavaFX launcher for all following
+ * applications: create the application and register its parameters in the windowing thread, call
+ * {@link Application#init()} in the calling thread and {@link Application#start(Stage)} in the windowing thread.
+ * <p>
+ * The context classloader of the windowing thread is the loader of the application for its whole lifetime, see
+ * {@link #setContextClassLoader(ClassLoader)}. FXML loaders resolve controllers and builders via the context
+ * classloader, also in event handlers long after the start.
+ *
+ * @author agent (created)
+ */
+final class GcLauncherFX
+{
+    private GcLauncherFX()
+    {
+        // Prevent instantiation
+    }
+
+    /**
+     * Create, initialize and start the given application.
+     *
+     * @throws Exception Thrown by the constructor or any life cycle method of the application.
+     */
+    static Application launch(final Class<? extends Application> clazz, final String... args) throws Exception
+    {
+        final Application[] l_application = new Application[1];
+        final Exception[] l_failure = new Exception[1];
+
+        GcUtilsFX.runLaterAndWait(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    l_application[0] = clazz.newInstance();
+                    ParametersImpl.registerParameters(l_application[0], new ParametersImpl(args));
+                }
+                catch (Exception e)
+                {
+                    l_failure[0] = e;
+                }
+            }
+        });
+        throwIfFailed(l_failure);
+
+        l_application[0].init();
+
+        GcUtilsFX.runLaterAndWait(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    l_application[0].start(new Stage());
+                }
+                catch (Exception e)
+                {
+                    l_failure[0] = e;
+                }
+            }
+        });
+        throwIfFailed(l_failure);
+
+        return l_application[0];
+    }
+
+    /**
+     * Call {@link Application#stop()} in the windowing thread.
+     *
+     * @throws GcException Thrown if the application fails to stop.
+     */
+    static void stop(final Application application)
+    {
+        final Exception[] l_failure = new Exception[1];
+        GcUtilsFX.runLaterAndWait(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    application.stop();
+                }
+                catch (Exception e)
+                {
+                    l_failure[0] = e;
+                }
+            }
+        });
+
+        if (l_failure[0] != null)
+        {
+            throw new GcException("Failed to stop application " + application.getClass().getName(), l_failure[0]);
+        }
+    }
+
+    /**
+     * Close all stages without exiting the toolkit.
+     */
+    static void closeAllStages()
+    {
+        GcUtilsFX.runLaterAndWait(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                // Closing a stage removes it from the list
+                for (Stage l_stage : new ArrayList<Stage>(StageHelper.getStages()))
+                {
+                    l_stage.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Set the context classloader of the windowing thread. The loader stays in place until it is set again, the
+     * windowing thread is shared by all applications started in this JVM.
+     */
+    static void setContextClassLoader(final ClassLoader loader)
+    {
+        GcUtilsFX.runLaterAndWait(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                Thread.currentThread().setContextClassLoader(loader);
+            }
+        });
+    }
+
+    private static void throwIfFailed(Exception[] failure) throws Exception
+    {
+        if (failure[0] != null)
+        {
+            throw failure[0];
+        }
+    }
+}
@@ -0,0 +1,104 @@
+// Copyright 2014 SICK AG. All rights reserved.
+package de.sick.guicheck.fx;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javafx.stage.Modality;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+
+/**
+ * Keeps track of the open modal stages per owner window. Owner and modality of a stage cannot change once it is shown,
+ * thus the open and close events of the {@link GcStageRegistryFX} are sufficient to keep the state. Checking whether a
+ * window is blocked is a single lookup instead of a scan of all stages.
+ *
+ * @author agent (created)
+ */
+final class GcModalTrackerFX
+{
+    private static final Object ms_lock = new Object();
+
+    // Guarded by ms_lock
+    private static final Map<Window, List<Stage>> ms_modalChildren = new HashMap<Window, List<Stage>>();
+    private static boolean ms_installed;
+
+    private static final GcStageRegistryFX.IListener LISTENER = new GcStageRegistryFX.IListener()
+    {
+        @Override
+        public void stageOpened(Stage stage)
+        {
+            if (isBlocking(stage))
+            {
+                synchronized (ms_lock)
+                {
+                    List<Stage> l_children = ms_modalChildren.get(stage.getOwner());
+                    if (l_children == null)
+                    {
+                        l_children = new ArrayList<Stage>(1);
+                        ms_modalChildren.put(stage.getOwner(), l_children);
+                    }
+                    if (!l_children.contains(stage))
+                    {
+                        l_children.add(stage);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void stageClosed(Stage stage)
+        {
+            if (isBlocking(stage))
+            {
+                synchronized (ms_lock)
+                {
+                    final List<Stage> l_children = ms_modalChildren.get(stage.getOwner());
+                    if (l_children != null && l_children.remove(stage) && l_children.isEmpty())
+                    {
+                        ms_modalChildren.remove(stage.getOwner());
+                    }
+                }
+            }
+        }
+    };
+
+    private GcModalTrackerFX()
+    {
+        // Prevent instantiation
+    }
+
+    /**
+     * @return An open modal stage owned by the given window or <code>null</code> if the window is not blocked.
+     */
+    static Stage getBlockingChild(Window owner)
+    {
+        install();
+        synchronized (ms_lock)
+        {
+            final List<Stage> l_children = ms_modalChildren.get(owner);
+            return l_children == null ? null : l_children.get(0);
+        }
+    }
+
+    private static void install()
+    {
+        synchronized (ms_lock)
+        {
+            if (ms_installed)
+            {
+                return;
+            }
+            ms_installed = true;
+        }
+
+        GcStageRegistryFX.addListener(LISTENER);
+    }
+
+    private static boolean isBlocking(Stage stage)
+    {
+        return stage.getOwner() != null && stage.getModality() != Modality.NONE;
+    }
+}
@@ -0,0 +1,189 @@
+// Copyright 2013 SICK AG. All rights reserved.
+package de.sick.guicheck.fx;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.CountDownLatch;
+
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+
+import de.sick.guicheck.GcAssertException;
+import de.sick.guicheck.GcPropertyAccessor;
+import de.sick.guicheck.GcTimeBudget;
+import de.sick.guicheck.GcUtils;
+
+/**
+ * Waits for a property to reach or leave an expected value. If the object provides the property as
+ * {@link ObservableValue} (e.g. <code>textProperty()</code>), a listener is attached in the windowing thread and the
+ * check returns as soon as the value changes accordingly. Plain bean properties are polled via
+ * {@link GcUtilsFX#eval(GcUtils.IEvaluator)}.
+ * <p>
+ * In both cases the value is read via its getter, so both variants compare the same values.
+ *
+ * @author agent (created)
+ */
+final class GcPropertyWaitFX
+{
+    private GcPropertyWaitFX()
+    {
+        // Prevent instantiation
+    }
+
+    /**
+     * Check if the given property of the given object has (or has not) the given value.
+     *
+     * @throws GcAssertException Thrown if the property does not reach the expected state within the evaluation timeout.
+     */
+    static <TT> void propertyIs(final Object obj, final String property, final TT value, final boolean expectedResult)
+    {
+        // Get the property getter ...
+        final MethodHandle l_getter = GcPropertyAccessor.getGetter(obj.getClass(), property, value == null ? null : value.getClass());
+        final MethodHandle l_observable = GcPropertyAccessor.getPropertyMethod(obj.getClass(), property);
+
+        if (l_observable == null)
+        {
+            poll(obj, property, value, expectedResult, l_getter);
+        }
+        else
+        {
+            observe(obj, property, value, expectedResult, l_getter, l_observable);
+        }
+    }
+
+    private static <TT> void poll(final Object obj, final String property, final TT value, final boolean expectedResult, final MethodHandle getter)
+    {
+        GcUtilsFX.eval(new GcUtils.IEvaluator<Void>()
+        {
+            @Override
+            public Void eval()
+            {
+                // ... get the value of the property ...
+                final Object l_value = GcPropertyAccessor.invokeGetter(getter, obj, property);
+
+                // ... and check it against the expected value
+                final String l_mismatch = GcUtils.checkPropertyValue(property, value, l_value, expectedResult);
+                if (l_mismatch != null)
+                {
+                    throw new GcAssertException(l_mismatch);
+                }
+                return null;
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <TT> void observe(final Object obj, final String property, final TT value, final boolean expectedResult, final MethodHandle getter,
+        final MethodHandle observable)
+    {
+        final CountDownLatch l_matched = new CountDownLatch(1);
+        final String[] l_mismatch = new String[1];
+        final RuntimeException[] l_failure = new RuntimeException[1];
+        final ObservableValue<Object>[] l_property = new ObservableValue[1];
+
+        final ChangeListener<Object> l_listener = new ChangeListener<Object>()
+        {
+            @Override
+            public void changed(ObservableValue<? extends Object> observableValue, Object oldValue, Object newValue)
+            {
+                check(obj, property, value, expectedResult, getter, l_mismatch, l_failure, l_matched);
+            }
+        };
+
+        GcUtilsFX.runLaterAndWait(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    final Object l_value = GcPropertyAccessor.invokeGetter(observable, obj, property);
+                    if (l_value instanceof ObservableValue)
+                    {
+                        l_property[0] = (ObservableValue<Object>)l_value;
+                        l_property[0].addListener(l_listener);
+                    }
+                    check(obj, property, value, expectedResult, getter, l_mismatch, l_failure, l_matched);
+                }
+                catch (RuntimeException e)
+                {
+                    // Hand the exception over to the test thread
+                    l_failure[0] = e;
+                }
+            }
+        });
+
+        try
+        {
+            if (l_failure[0] == null && l_property[0] == null && l_matched.getCount() > 0)
+            {
+                // The property method does not return an observable value
+                poll(obj, property, value, expectedResult, getter);
+                return;
+            }
+
+            if (l_failure[0] == null)
+            {
+                GcUtils.await(l_matched, GcUtilsFX.EVALUATION_TIMEOUT);
+            }
+        }
+        finally
+        {
+            if (l_property[0] != null)
+            {
+                Platform.runLater(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        l_property[0].removeListener(l_listener);
+                    }
+                });
+            }
+        }
+
+        synchronized (l_mismatch)
+        {
+            if (l_failure[0] != null)
+            {
+                throw l_failure[0];
+            }
+            if (l_matched.getCount() > 0)
+            {
+                final GcAssertException l_exception = new GcAssertException(l_mismatch[0]);
+                GcTimeBudget.check("waiting for property " + property, l_exception);
+                throw l_exception;
+            }
+        }
+    }
+
+    /**
+     * Called in the windowing thread with the current value of the property.
+     */
+    private static <TT> void check(Object obj, String property, TT value, boolean expectedResult, MethodHandle getter, String[] mismatch,
+        RuntimeException[] failure, CountDownLatch matched)
+    {
+        synchronized (mismatch)
+        {
+            if (matched.getCount() == 0 || failure[0] != null)
+            {
+                return;
+            }
+
+            try
+            {
+                final Object l_value = GcPropertyAccessor.invokeGetter(getter, obj, property);
+                mismatch[0] = GcUtils.checkPropertyValue(property, value, l_value, expectedResult);
+                if (mismatch[0] == null)
+                {
+                    matched.countDown();
+                }
+            }
+            catch (RuntimeException e)
+            {
+                failure[0] = e;
+                matched.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+// Copyright 2014 SICK AG. All rights reserved.
+package de.sick.guicheck.fx;
+
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+
+import com.sun.javafx.stage.StageHelper;
+
+import de.sick.guicheck.GcTextMatcher;
+
+/**
+ * Conditions telling {@link GcTestFX#startApp(ICondition, String, String...)} when an application is ready for testing.
+ * The conditions are checked in the windowing thread whenever a stage is added or shown and after each pulse, thus
+ * after each rendering of the scenes.
+ *
+ * @author agent (created)
+ */
+public final class GcReadinessFX
+{
+    /**
+     * A readiness condition. {@link #isReady()} is called in the windowing thread.
+     */
+    public interface ICondition
+    {
+        boolean isReady();
+    }
+
+    private GcReadinessFX()
+    {
+        // Prevent instantiation
+    }
+
+    /**
+     * The application is ready as soon as any stage is shown. This is the default condition.
+     */
+    public static ICondition firstStageShown()
+    {
+        return new ICondition()
+        {
+            @Override
+            public boolean isReady()
+            {
+                for (Stage l_stage : StageHelper.getStages())
+                {
+                    if (l_stage.isShowing())
+                    {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public String toString()
+            {
+                return "first stage shown";
+            }
+        };
+    }
+
+    /**
+     * The application is ready as soon as a stage with the given title is shown.
+     *
+     * @param titleRegEx <code>null</code> means the title is not set
+     */
+    public static ICondition stageShown(final String titleRegEx)
+    {
+        final GcTextMatcher l_matcher = GcTextMatcher.of(titleRegEx);
+        return new ICondition()
+        {
+            @Override
+            public boolean isReady()
+            {
+                return findStage(l_matcher) != null;
+            }
+
+            @Override
+            public String toString()
+            {
+                return "stage " + titleRegEx + " shown";
+            }
+        };
+    }
+
+    /**
+     * The application is ready as soon as the node for the given CSS selector is visible in a shown stage with the
+     * given title.
+     *
+     * @param titleRegEx <code>null</code> means the title is not set
+     */
+    public static ICondition nodeRendered(final String titleRegEx, final String selector)
+    {
+        final GcTextMatcher l_matcher = GcTextMatcher.of(titleRegEx);
+        return new ICondition()
+        {
+            @Override
+            public boolean isReady()
+            {
+                final Stage l_stage = findStage(l_matcher);
+                final Scene l_scene = l_stage == null ? null : l_stage.getScene();
+                if (l_scene == null || l_scene.getRoot() == null)
+                {
+                    return false;
+                }
+
+                // A scene which does not need a layout pass went through at least one pulse
+                final Node l_node = GcSceneIndexFX.lookup(l_scene.getRoot(), selector);
+                return l_node != null && GcUtilsFX.isTreeVisible(l_node) && !l_scene.getRoot().isNeedsLayout();
+            }
+
+            @Override
+            public String toString()
+            {
+                return "node " + selector + " of stage " + titleRegEx + " rendered";
+            }
+        };
+    }
+
+    private static Stage findStage(GcTextMatcher titleMatcher)
+    {
+        for (Stage l_stage : StageHelper.getStages())
+        {
+            if (l_stage.isShowing() && titleMatcher.matches(l_stage.getTitle()))
+            {
+                return l_stage;
+            }
+        }
+        return null;
+    }
+}
@@ -1,17 +1,22 @@
 // Copyright 2013 SICK AG. All rights reserved.
 package de.sick.guicheck.fx;
 
+import java.util.Collections;
+
+import javafx.event.Event;
 import javafx.geometry.Bounds;
 import javafx.geometry.Point2D;
 import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.control.TextInputControl;
+import javafx.scene.input.InputMethodEvent;
+import javafx.scene.input.InputMethodTextRun;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseButton;
-import javafx.stage.Modality;
 import javafx.stage.Stage;
 
 import com.sun.javafx.robot.FXRobot;
-import com.sun.javafx.stage.StageHelper;
 
 import de.sick.guicheck.GcAssertException;
 
@@ -27,6 +32,11 @@ import de.sick.guicheck.GcAssertException;
  */
 public class GcRobotFX
 {
+    /**
+     * The number of characters committed per input method event by {@link #typeTextAsInputMethod(String)}.
+     */
+    private static final int TEXT_CHUNK_SIZE = 1024;
+
     private final FXRobot m_robot;
     private final GcStageFX m_stage;
 
@@ -36,6 +46,16 @@ public class GcRobotFX
         m_robot = robot;
     }
 
+    /**
+     * Start a sequence of input actions which is sent with a single wait for the windowing thread at the end.
+     *
+     * @see GcInputSequenceFX#perform()
+     */
+    public GcInputSequenceFX sequence()
+    {
+        return new GcInputSequenceFX(this, m_robot);
+    }
+
     /**
      * @see FXRobot#keyPress(KeyCode)
      */
@@ -72,19 +92,7 @@ public class GcRobotFX
      */
     public GcRobotFX keyType(KeyCode... codes)
     {
-        if (GcUtilsFX.isPlatformAlive())
-        {
-            checkForModalChildStages();
-            for (KeyCode c : codes)
-            {
-                m_robot.keyPress(c);
-                GcUtilsFX.waitForIdle();
-                m_robot.keyRelease(c);
-                GcUtilsFX.waitForIdle();
-            }
-        }
-
-        return this;
+        return sequence().keyType(codes).perform();
     }
 
     /**
@@ -103,23 +111,128 @@ public class GcRobotFX
     }
 
     /**
-     * Type the given string on the keyboard. The component having the focus will get the resulting {@link KeyEvent}
+     * Type the given string on the keyboard. The component having the focus will get the resulting {@link KeyEvent}.
+     * All characters are sent in one sequence.
      */
     public GcRobotFX keyType(String s)
     {
-        if (GcUtilsFX.isPlatformAlive())
+        return sequence().keyType(s).perform();
+    }
+
+    /**
+     * Enter the given text into the focused {@link TextInputControl} as a burst of {@link KeyEvent#KEY_TYPED} events,
+     * one per code point, delivered in one run of the windowing thread with a single wait at the end. Key handlers and
+     * filters see the same typed characters as for real typing, any Unicode text is supported. Key presses and releases
+     * are only generated for line breaks and tabs.
+     * <p>
+     * Falls back to {@link #keyType(String)} if the focus owner is no text input control.
+     */
+    public GcRobotFX typeText(final String s)
+    {
+        return enterText(s, false);
+    }
+
+    /**
+     * Enter the given text into the focused {@link TextInputControl} as committed text of {@link InputMethodEvent}s,
+     * like an input method does. Large texts are split into chunks at code point boundaries, all chunks are delivered
+     * in one run of the windowing thread. Only input method handlers and filters get the events, key handlers do not,
+     * so use this only if the application does not check typed keys.
+     * <p>
+     * Falls back to {@link #keyType(String)} if the focus owner is no text input control.
+     */
+    public GcRobotFX typeTextAsInputMethod(final String s)
+    {
+        return enterText(s, true);
+    }
+
+    private GcRobotFX enterText(final String s, final boolean inputMethod)
+    {
+        if (!GcUtilsFX.isPlatformAlive() || s.isEmpty())
         {
-            checkForModalChildStages();
-            for (char c : s.toCharArray())
+            return this;
+        }
+
+        checkForModalChildStages();
+        final boolean[] l_delivered = new boolean[1];
+        GcUtilsFX.runLaterAndWait(new Runnable()
+        {
+            @Override
+            public void run()
             {
-                final KeyCode l_code = KeyCode.getKeyCode(String.valueOf(c));
-                m_robot.keyType(l_code == null ? KeyCode.UNDEFINED : l_code, Character.toString(c));
-                GcUtilsFX.waitForIdle();
+                final Scene l_scene = ((Stage)m_stage.getFXComponent()).getScene();
+                if (l_scene.getFocusOwner() instanceof TextInputControl)
+                {
+                    if (inputMethod)
+                    {
+                        commitText(l_scene.getFocusOwner(), s);
+                    }
+                    else
+                    {
+                        fireKeyTyped(l_scene, s);
+                    }
+                    l_delivered[0] = true;
+                }
             }
+        });
+
+        if (!l_delivered[0])
+        {
+            return keyType(s);
         }
+
+        GcUtilsFX.waitForIdle();
         return this;
     }
 
+    /**
+     * Must be called in the windowing thread.
+     */
+    private static void fireKeyTyped(Scene scene, String s)
+    {
+        for (int i = 0; i < s.length();)
+        {
+            final int l_codePoint = s.codePointAt(i);
+            final String l_char = new String(Character.toChars(l_codePoint));
+            i += l_char.length();
+
+            // Like a keyboard the events go to the current focus owner, a tab may move the focus
+            final Node l_target = scene.getFocusOwner();
+            if (l_target == null)
+            {
+                return;
+            }
+
+            // Line breaks and tabs are handled by key bindings of the pressed keys, not by the typed character
+            final KeyCode l_code = l_codePoint == '\n' ? KeyCode.ENTER : l_codePoint == '\t' ? KeyCode.TAB : null;
+            if (l_code != null)
+            {
+                Event.fireEvent(l_target, new KeyEvent(KeyEvent.KEY_PRESSED, KeyEvent.CHAR_UNDEFINED, "", l_code, false, false, false, false));
+            }
+            Event.fireEvent(l_target, new KeyEvent(KeyEvent.KEY_TYPED, l_char, "", KeyCode.UNDEFINED, false, false, false, false));
+            if (l_code != null)
+            {
+                Event.fireEvent(l_target, new KeyEvent(KeyEvent.KEY_RELEASED, KeyEvent.CHAR_UNDEFINED, "", l_code, false, false, false, false));
+            }
+        }
+    }
+
+    /**
+     * Must be called in the windowing thread.
+     */
+    private static void commitText(Node target, String s)
+    {
+        for (int l_start = 0; l_start < s.length();)
+        {
+            int l_end = Math.min(l_start + TEXT_CHUNK_SIZE, s.length());
+            if (l_end < s.length() && Character.isHighSurrogate(s.charAt(l_end - 1)))
+            {
+                l_end--;
+            }
+            Event.fireEvent(target, new InputMethodEvent(InputMethodEvent.INPUT_METHOD_TEXT_CHANGED, Collections.<InputMethodTextRun> emptyList(), s.substring(l_start, l_end), 0));
+            l_start = l_end;
+        }
+    }
+
     /**
      * @see FXRobot#mouseWheel(int)
      */
@@ -201,7 +314,6 @@ public class GcRobotFX
      */
     public GcRobotFX mousePress()
     {
-        checkForModalChildStages();
         internalMousePress(MouseButton.PRIMARY, 1);
         return this;
     }
@@ -213,7 +325,6 @@ public class GcRobotFX
      */
     public GcRobotFX mousePressSecondary()
     {
-        checkForModalChildStages();
         internalMousePress(MouseButton.SECONDARY, 1);
         return this;
     }
@@ -225,7 +336,6 @@ public class GcRobotFX
      */
     public GcRobotFX mouseRelease()
     {
-        checkForModalChildStages();
         internalMouseRelease(MouseButton.PRIMARY, 1);
         return this;
     }
@@ -237,7 +347,6 @@ public class GcRobotFX
      */
     public GcRobotFX mouseReleaseSecondary()
     {
-        checkForModalChildStages();
         internalMouseRelease(MouseButton.SECONDARY, 1);
         return this;
     }
@@ -249,9 +358,7 @@ public class GcRobotFX
      */
     public GcRobotFX mouseClick()
     {
-        checkForModalChildStages();
-        internalMouseClick(MouseButton.PRIMARY, 1);
-        return this;
+        return sequence().mouseClick().perform();
     }
 
     /**
@@ -261,9 +368,7 @@ public class GcRobotFX
      */
     public GcRobotFX mouseClickSecondary()
     {
-        checkForModalChildStages();
-        internalMouseClick(MouseButton.SECONDARY, 1);
-        return this;
+        return sequence().mouseClickSecondary().perform();
     }
 
     /**
@@ -273,10 +378,7 @@ public class GcRobotFX
      */
     public GcRobotFX mouseDblClick()
     {
-        checkForModalChildStages();
-        internalMouseClick(MouseButton.PRIMARY, 1);
-        internalMouseClick(MouseButton.PRIMARY, 2);
-        return this;
+        return sequence().mouseDblClick().perform();
     }
 
     /**
@@ -286,10 +388,7 @@ public class GcRobotFX
      */
     public GcRobotFX mouseDblClickSecondary()
     {
-        checkForModalChildStages();
-        internalMouseClick(MouseButton.SECONDARY, 1);
-        internalMouseClick(MouseButton.SECONDARY, 2);
-        return this;
+        return sequence().mouseDblClickSecondary().perform();
     }
 
     /**
@@ -314,18 +413,6 @@ public class GcRobotFX
         return this;
     }
 
-    private void internalMouseClick(MouseButton button, int clickCount)
-    {
-        internalMousePress(button, clickCount);
-        internalMouseRelease(button, clickCount);
-
-        if (GcUtilsFX.isPlatformAlive())
-        {
-            m_robot.mouseClick(button, clickCount);
-            GcUtilsFX.waitForIdle();
-        }
-    }
-
     private void internalMouseDrag(MouseButton button)
     {
         if (GcUtilsFX.isPlatformAlive())
@@ -384,14 +471,13 @@ public class GcRobotFX
         return this;
     }
 
-    private void checkForModalChildStages()
+    void checkForModalChildStages()
     {
-        for (Stage s : StageHelper.getStages())
+        final Stage l_stage = m_stage.getFXComponent();
+        final Stage l_child = GcModalTrackerFX.getBlockingChild(l_stage);
+        if (l_child != null)
         {
-            if (s.getOwner() == m_stage.getFXComponent() && s.isShowing() && s.getModality() != Modality.NONE)
-            {
-                throw new GcAssertException("The stage <" + ((Stage)m_stage.getFXComponent()).getTitle() + "> is blocked by the modal child window <" + s.getTitle() + ">");
-            }
+            throw new GcAssertException("The stage <" + l_stage.getTitle() + "> is blocked by the modal child window <" + l_child.getTitle() + ">");
         }
     }
 }
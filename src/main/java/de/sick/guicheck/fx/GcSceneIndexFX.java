@@ -0,0 +1,547 @@
+// Copyright 2013 SICK AG. All rights reserved.
+package de.sick.guicheck.fx;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.ListChangeListener;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+
+/**
+ * An index of all nodes of a scene by id, style class and type. The index is built once per scene and kept up to date
+ * via listeners on the children, the id and the style classes of each node.
+ * <p>
+ * Selectors consisting of an optional type followed by an id and style classes, e.g. <code>#id</code>,
+ * <code>.style</code> or <code>Button.style#id</code>, are resolved via the index. All other selectors are passed to
+ * {@link Node#lookup(String)}. The result is the same as returned by {@link Node#lookup(String)} and
+ * {@link Node#lookupAll(String)}, candidates are ordered like the depth first traversal done by the scene graph.
+ *
+ * @author agent (created)
+ */
+final class GcSceneIndexFX
+{
+    /**
+     * The values are only weakly referenced because an index references all nodes of its scene. The listeners
+     * attached to the scene graph keep the index alive as long as its scene lives.
+     */
+    private static final Map<Scene, WeakReference<GcSceneIndexFX>> ms_indexes = new WeakHashMap<Scene, WeakReference<GcSceneIndexFX>>();
+
+    private static final Comparator<Node> TREE_ORDER = new Comparator<Node>()
+    {
+        @Override
+        public int compare(Node n1, Node n2)
+        {
+            return compareTreeOrder(n1, n2);
+        }
+    };
+
+    private final Map<String, Set<Node>> m_byId = new HashMap<String, Set<Node>>();
+    private final Map<String, Set<Node>> m_byStyleClass = new HashMap<String, Set<Node>>();
+    private final Map<String, Set<Node>> m_byType = new HashMap<String, Set<Node>>();
+    private final Map<Node, NodeListener> m_listeners = new HashMap<Node, NodeListener>();
+    private boolean m_built;
+
+    private final ChangeListener<Parent> m_rootListener = new ChangeListener<Parent>()
+    {
+        @Override
+        public void changed(ObservableValue<? extends Parent> observable, Parent oldRoot, Parent newRoot)
+        {
+            synchronized (GcSceneIndexFX.this)
+            {
+                if (oldRoot != null)
+                {
+                    removeTree(oldRoot);
+                }
+                if (newRoot != null)
+                {
+                    addTree(newRoot);
+                }
+            }
+        }
+    };
+
+    private GcSceneIndexFX()
+    {
+    }
+
+    /**
+     * Find the first node in the subtree of the given node matching the selector.
+     *
+     * @see Node#lookup(String)
+     */
+    static Node lookup(Node root, String selector)
+    {
+        final List<Node> l_found = lookupIndexed(root, selector);
+        if (l_found == null)
+        {
+            return root.lookup(selector);
+        }
+
+        return l_found.isEmpty() ? null : l_found.get(0);
+    }
+
+    /**
+     * Find all nodes in the subtree of the given node matching the selector.
+     *
+     * @see Node#lookupAll(String)
+     */
+    static Set<Node> lookupAll(Node root, String selector)
+    {
+        final List<Node> l_found = lookupIndexed(root, selector);
+        if (l_found == null)
+        {
+            return root.lookupAll(selector);
+        }
+
+        return new LinkedHashSet<Node>(l_found);
+    }
+
+    /**
+     * @return The matching nodes in tree order or <code>null</code> if the selector cannot be resolved via the index.
+     */
+    private static List<Node> lookupIndexed(Node root, String selector)
+    {
+        final SimpleSelector l_selector = SimpleSelector.parse(selector);
+        final Scene l_scene = root.getScene();
+        if (l_selector == null || l_scene == null)
+        {
+            return null;
+        }
+
+        final List<Node> l_found = getIndex(l_scene).find(root, l_selector);
+        if (l_found == null)
+        {
+            return null;
+        }
+
+        if (l_found.size() > 1)
+        {
+            Collections.sort(l_found, TREE_ORDER);
+        }
+
+        return l_found;
+    }
+
+    private static GcSceneIndexFX getIndex(final Scene scene)
+    {
+        final GcSceneIndexFX l_index;
+        synchronized (ms_indexes)
+        {
+            final WeakReference<GcSceneIndexFX> l_ref = ms_indexes.get(scene);
+            if (l_ref != null && l_ref.get() != null)
+            {
+                return l_ref.get();
+            }
+
+            l_index = new GcSceneIndexFX();
+            ms_indexes.put(scene, new WeakReference<GcSceneIndexFX>(l_index));
+        }
+
+        // The listeners must be attached in the windowing thread
+        final Runnable l_build = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                l_index.build(scene);
+            }
+        };
+
+        if (Platform.isFxApplicationThread())
+        {
+            l_build.run();
+        }
+        else
+        {
+            GcUtilsFX.runLaterAndWait(l_build);
+        }
+
+        return l_index;
+    }
+
+    private synchronized void build(Scene scene)
+    {
+        scene.rootProperty().addListener(m_rootListener);
+        if (scene.getRoot() != null)
+        {
+            addTree(scene.getRoot());
+        }
+        m_built = true;
+    }
+
+    /**
+     * @return The matching nodes or <code>null</code> if the index is not built yet.
+     */
+    private synchronized List<Node> find(Node root, SimpleSelector selector)
+    {
+        if (!m_built)
+        {
+            return null;
+        }
+
+        // Start with the most selective part of the selector
+        Set<Node> l_candidates = null;
+        if (selector.m_id != null)
+        {
+            l_candidates = get(m_byId, selector.m_id);
+        }
+        else
+        {
+            for (String l_styleClass : selector.m_styleClasses)
+            {
+                final Set<Node> l_set = get(m_byStyleClass, l_styleClass);
+                if (l_candidates == null || l_set.size() < l_candidates.size())
+                {
+                    l_candidates = l_set;
+                }
+            }
+
+            if (l_candidates == null)
+            {
+                l_candidates = get(m_byType, selector.m_type);
+            }
+        }
+
+        final List<Node> l_result = new ArrayList<Node>();
+        for (Node l_node : l_candidates)
+        {
+            if (selector.applies(l_node) && isInSubtree(l_node, root))
+            {
+                l_result.add(l_node);
+            }
+        }
+
+        return l_result;
+    }
+
+    private void addTree(Node node)
+    {
+        if (m_listeners.containsKey(node))
+        {
+            return;
+        }
+
+        final NodeListener l_listener = new NodeListener(node);
+        m_listeners.put(node, l_listener);
+        l_listener.attach();
+
+        if (node instanceof Parent)
+        {
+            for (Node l_child : ((Parent)node).getChildrenUnmodifiable())
+            {
+                addTree(l_child);
+            }
+        }
+    }
+
+    private void removeTree(Node node)
+    {
+        final NodeListener l_listener = m_listeners.remove(node);
+        if (l_listener == null)
+        {
+            return;
+        }
+
+        l_listener.detach();
+
+        if (node instanceof Parent)
+        {
+            for (Node l_child : ((Parent)node).getChildrenUnmodifiable())
+            {
+                removeTree(l_child);
+            }
+        }
+    }
+
+    private static Set<Node> get(Map<String, Set<Node>> map, String key)
+    {
+        final Set<Node> l_set = map.get(key);
+        return l_set == null ? Collections.<Node> emptySet() : l_set;
+    }
+
+    private static void put(Map<String, Set<Node>> map, String key, Node node)
+    {
+        if (key == null)
+        {
+            return;
+        }
+
+        Set<Node> l_set = map.get(key);
+        if (l_set == null)
+        {
+            l_set = new HashSet<Node>(2);
+            map.put(key, l_set);
+        }
+        l_set.add(node);
+    }
+
+    private static void remove(Map<String, Set<Node>> map, String key, Node node)
+    {
+        if (key == null)
+        {
+            return;
+        }
+
+        final Set<Node> l_set = map.get(key);
+        if (l_set != null && l_set.remove(node) && l_set.isEmpty())
+        {
+            map.remove(key);
+        }
+    }
+
+    private static boolean isInSubtree(Node node, Node root)
+    {
+        for (Node l_node = node; l_node != null; l_node = l_node.getParent())
+        {
+            if (l_node == root)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Compare two nodes of the same scene according to a depth first traversal.
+     */
+    private static int compareTreeOrder(Node n1, Node n2)
+    {
+        final List<Node> l_path1 = getPath(n1);
+        final List<Node> l_path2 = getPath(n2);
+
+        int i = 0;
+        while (i < l_path1.size() && i < l_path2.size() && l_path1.get(i) == l_path2.get(i))
+        {
+            i++;
+        }
+
+        if (i == l_path1.size() || i == l_path2.size())
+        {
+            // One node is the ancestor of the other one
+            return l_path1.size() - l_path2.size();
+        }
+
+        if (i == 0)
+        {
+            return 0;
+        }
+
+        final List<Node> l_children = ((Parent)l_path1.get(i - 1)).getChildrenUnmodifiable();
+        return l_children.indexOf(l_path1.get(i)) - l_children.indexOf(l_path2.get(i));
+    }
+
+    private static List<Node> getPath(Node node)
+    {
+        final List<Node> l_path = new ArrayList<Node>();
+        for (Node l_node = node; l_node != null; l_node = l_node.getParent())
+        {
+            l_path.add(l_node);
+        }
+        Collections.reverse(l_path);
+        return l_path;
+    }
+
+    /**
+     * Keeps the index entries of a single node up to date.
+     */
+    private final class NodeListener implements ChangeListener<String>, ListChangeListener<Object>
+    {
+        private final Node m_node;
+        private final String m_type;
+        private String m_id;
+        private final List<String> m_styleClasses = new ArrayList<String>();
+
+        NodeListener(Node node)
+        {
+            m_node = node;
+            m_type = node.getTypeSelector();
+        }
+
+        void attach()
+        {
+            m_id = m_node.getId();
+            m_styleClasses.addAll(m_node.getStyleClass());
+
+            put(m_byId, m_id, m_node);
+            put(m_byType, m_type, m_node);
+            for (String l_styleClass : m_styleClasses)
+            {
+                put(m_byStyleClass, l_styleClass, m_node);
+            }
+
+            m_node.idProperty().addListener(this);
+            m_node.getStyleClass().addListener(this);
+            if (m_node instanceof Parent)
+            {
+                ((Parent)m_node).getChildrenUnmodifiable().addListener(this);
+            }
+        }
+
+        void detach()
+        {
+            m_node.idProperty().removeListener(this);
+            m_node.getStyleClass().removeListener(this);
+            if (m_node instanceof Parent)
+            {
+                ((Parent)m_node).getChildrenUnmodifiable().removeListener(this);
+            }
+
+            remove(m_byId, m_id, m_node);
+            remove(m_byType, m_type, m_node);
+            for (String l_styleClass : m_styleClasses)
+            {
+                remove(m_byStyleClass, l_styleClass, m_node);
+            }
+        }
+
+        /**
+         * The id changed.
+         */
+        @Override
+        public void changed(ObservableValue<? extends String> observable, String oldValue, String newValue)
+        {
+            synchronized (GcSceneIndexFX.this)
+            {
+                remove(m_byId, m_id, m_node);
+                m_id = newValue;
+                put(m_byId, m_id, m_node);
+            }
+        }
+
+        /**
+         * The style classes or the children changed.
+         */
+        @Override
+        public void onChanged(Change<? extends Object> change)
+        {
+            synchronized (GcSceneIndexFX.this)
+            {
+                if (change.getList() == m_node.getStyleClass())
+                {
+                    for (String l_styleClass : m_styleClasses)
+                    {
+                        remove(m_byStyleClass, l_styleClass, m_node);
+                    }
+                    m_styleClasses.clear();
+                    m_styleClasses.addAll(m_node.getStyleClass());
+                    for (String l_styleClass : m_styleClasses)
+                    {
+                        put(m_byStyleClass, l_styleClass, m_node);
+                    }
+                    return;
+                }
+
+                while (change.next())
+                {
+                    for (Object l_removed : change.getRemoved())
+                    {
+                        // Nodes moved to another parent may already be indexed there
+                        final Node l_node = (Node)l_removed;
+                        if (l_node.getParent() == null || l_node.getParent() == m_node)
+                        {
+                            removeTree(l_node);
+                        }
+                    }
+                    for (Object l_added : change.getAddedSubList())
+                    {
+                        addTree((Node)l_added);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A selector consisting of an optional type followed by at most one id and any number of style classes.
+     */
+    private static final class SimpleSelector
+    {
+        private String m_type;
+        private String m_id;
+        private final List<String> m_styleClasses = new ArrayList<String>();
+
+        /**
+         * @return The parsed selector or <code>null</code> if the selector is more complex.
+         */
+        static SimpleSelector parse(String selector)
+        {
+            final SimpleSelector l_selector = new SimpleSelector();
+            final int l_length = selector.length();
+
+            int i = 0;
+            while (i < l_length)
+            {
+                final char l_prefix = selector.charAt(i);
+                final int l_start = (l_prefix == '#' || l_prefix == '.') ? i + 1 : i;
+
+                int l_end = l_start;
+                while (l_end < l_length && isNameChar(selector.charAt(l_end)))
+                {
+                    l_end++;
+                }
+
+                if (l_end == l_start)
+                {
+                    // Combinators, pseudo classes, universal selectors and so on
+                    return null;
+                }
+
+                final String l_name = selector.substring(l_start, l_end);
+                if (l_prefix == '#')
+                {
+                    if (l_selector.m_id != null)
+                    {
+                        return null;
+                    }
+                    l_selector.m_id = l_name;
+                }
+                else if (l_prefix == '.')
+                {
+                    l_selector.m_styleClasses.add(l_name);
+                }
+                else if (i == 0)
+                {
+                    l_selector.m_type = l_name;
+                }
+                else
+                {
+                    return null;
+                }
+
+                i = l_end;
+            }
+
+            if (l_selector.m_type == null && l_selector.m_id == null && l_selector.m_styleClasses.isEmpty())
+            {
+                return null;
+            }
+
+            return l_selector;
+        }
+
+        boolean applies(Node node)
+        {
+            return (m_type == null || m_type.equals(node.getTypeSelector())) && (m_id == null || m_id.equals(node.getId())) && node.getStyleClass().containsAll(m_styleClasses);
+        }
+
+        private static boolean isNameChar(char c)
+        {
+            return Character.isLetterOrDigit(c) || c == '-' || c == '_';
+        }
+    }
+}
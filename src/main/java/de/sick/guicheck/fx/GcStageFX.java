@@ -2,21 +2,26 @@
 package de.sick.guicheck.fx;
 
 import java.io.File;
-import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.IntBuffer;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Future;
 
-import javafx.embed.swing.SwingFXUtils;
 import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.ContextMenu;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 import javafx.stage.Stage;
 import javafx.stage.Window;
 
-import javax.imageio.ImageIO;
-
 import com.sun.javafx.robot.FXRobotFactory;
 
 import de.sick.guicheck.GcAssertException;
+import de.sick.guicheck.GcException;
+import de.sick.guicheck.GcSnapshotWriter;
 import de.sick.guicheck.GcUtils;
 
 /**
@@ -26,13 +31,77 @@ import de.sick.guicheck.GcUtils;
  */
 public class GcStageFX extends GcComponentFX<GcStageFX>
 {
+    private static final Object ms_lock = new Object();
+
+    // Guarded by ms_lock. The wrappers reference their stage, thus they are only weakly referenced as well. Closed
+    // stages are evicted right away.
+    private static final Map<Stage, WeakReference<GcStageFX>> ms_wrappers = new WeakHashMap<Stage, WeakReference<GcStageFX>>();
+    private static boolean ms_evicting;
+
+    private static final GcStageRegistryFX.IListener EVICTING_LISTENER = new GcStageRegistryFX.IListener()
+    {
+        @Override
+        public void stageOpened(Stage stage)
+        {
+            // Wrappers are created on demand
+        }
+
+        @Override
+        public void stageClosed(Stage stage)
+        {
+            synchronized (ms_lock)
+            {
+                ms_wrappers.remove(stage);
+            }
+        }
+    };
+
     private final GcRobotFX m_robot;
     private final Stage m_stage;
+    private final Scene m_scene;
 
     protected GcStageFX(final Stage stage)
     {
         m_stage = stage;
-        m_robot = new GcRobotFX(this, FXRobotFactory.createRobot(stage.getScene()));
+        m_scene = stage.getScene();
+        m_robot = new GcRobotFX(this, FXRobotFactory.createRobot(m_scene));
+    }
+
+    /**
+     * Get the wrapper of the given stage. The wrapper and its robot are shared as long as the stage is open, shows the
+     * same scene and the wrapper is referenced somewhere.
+     */
+    static GcStageFX of(Stage stage)
+    {
+        final boolean l_install;
+        synchronized (ms_lock)
+        {
+            l_install = !ms_evicting;
+            ms_evicting = true;
+        }
+        if (l_install)
+        {
+            // Outside the lock, the registration waits for the windowing thread
+            GcStageRegistryFX.addListener(EVICTING_LISTENER);
+        }
+
+        synchronized (ms_lock)
+        {
+            final WeakReference<GcStageFX> l_ref = ms_wrappers.get(stage);
+            GcStageFX l_wrapper = l_ref == null ? null : l_ref.get();
+            if (l_wrapper == null || l_wrapper.m_scene != stage.getScene())
+            {
+                l_wrapper = new GcStageFX(stage);
+                ms_wrappers.put(stage, new WeakReference<GcStageFX>(l_wrapper));
+
+                // The stage may have been closed and evicted concurrently, it is hidden before it is evicted
+                if (!stage.isShowing())
+                {
+                    ms_wrappers.remove(stage);
+                }
+            }
+            return l_wrapper;
+        }
     }
 
     /**
@@ -79,29 +148,36 @@ public class GcStageFX extends GcComponentFX<GcStageFX>
     };
 
     /**
-     * Take a snapshot of the current scene contained in this stage and save it to a PNG file.
+     * Take a snapshot of the current scene contained in this stage and save it to a PNG file or the snapshot archive.
+     * Only the pixels are copied in the windowing thread, the file is written in the background.
      * 
      * @param filename The name of the file without extension
+     * @return The future of the written file.
+     * @throws GcException Thrown if the JavaFX platform is not running.
+     * @see GcSnapshotWriter
      */
-    public void takeSceneSnapshot(final String filename)
+    public Future<File> takeSceneSnapshot(final String filename)
     {
+        final int[] l_size = new int[2];
+        final IntBuffer[] l_pixels = new IntBuffer[1];
         GcUtilsFX.runLaterAndWait(new Runnable()
         {
             @Override
             public void run()
             {
-                final File l_file = new File(filename + ".png");
-                try
-                {
-                    ImageIO.write(SwingFXUtils.fromFXImage(m_stage.getScene().snapshot(null), null), "png", l_file);
-                    System.out.println("Snapshot saved to : " + l_file.getAbsolutePath());
-                }
-                catch (final IOException l_exception)
-                {
-                    l_exception.printStackTrace();
-                }
+                final WritableImage l_image = m_stage.getScene().snapshot(null);
+                l_size[0] = (int)l_image.getWidth();
+                l_size[1] = (int)l_image.getHeight();
+                l_pixels[0] = GcSnapshotWriter.acquireBuffer(l_size[0] * l_size[1]);
+                l_image.getPixelReader().getPixels(0, 0, l_size[0], l_size[1], PixelFormat.getIntArgbInstance(), l_pixels[0], l_size[0]);
             }
         });
+
+        if (l_pixels[0] == null)
+        {
+            throw new GcException("Failed to take snapshot " + filename + ", the JavaFX platform is not running");
+        }
+        return GcSnapshotWriter.snapshot(l_pixels[0], l_size[0], l_size[1], new File(filename + ".png"));
     }
 
     /**
@@ -0,0 +1,344 @@
+// Copyright 2014 SICK AG. All rights reserved.
+package de.sick.guicheck.fx;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.ListChangeListener;
+import javafx.stage.Stage;
+
+import com.sun.javafx.stage.StageHelper;
+
+import de.sick.guicheck.GcTextMatcher;
+import de.sick.guicheck.GcUtils;
+
+/**
+ * Registry of the open stages, indexed by title. The registry listens to the list of stages of the toolkit and to the
+ * titles of the stages. A lookup resolves immediately if a matching stage is open, otherwise it waits for the next
+ * matching stage to be opened or renamed.
+ * <p>
+ * Listeners registered via {@link #addListener(IListener)} are notified in the windowing thread about opened and closed
+ * stages.
+ *
+ * @author agent (created)
+ */
+public final class GcStageRegistryFX
+{
+    /**
+     * Gets notified about opened and closed stages. All methods are called in the windowing thread.
+     */
+    public interface IListener
+    {
+        void stageOpened(Stage stage);
+
+        void stageClosed(Stage stage);
+    }
+
+    /**
+     * A thread waiting for a stage with a matching title.
+     */
+    private static final class Waiter
+    {
+        private final GcTextMatcher m_title;
+        private final CountDownLatch m_found = new CountDownLatch(1);
+        private Stage m_stage;
+
+        Waiter(GcTextMatcher title)
+        {
+            m_title = title;
+        }
+    }
+
+    private static final Object ms_lock = new Object();
+    private static final List<IListener> ms_listeners = new CopyOnWriteArrayList<IListener>();
+
+    // Guarded by ms_lock, only modified in the windowing thread
+    private static final List<Stage> ms_open = new ArrayList<Stage>();
+    private static final Map<String, List<Stage>> ms_byTitle = new HashMap<String, List<Stage>>();
+    private static final Map<Stage, String> ms_titles = new HashMap<Stage, String>();
+    private static final List<Waiter> ms_waiters = new ArrayList<Waiter>();
+    private static boolean ms_installed;
+
+    private static final ChangeListener<String> TITLE_LISTENER = new ChangeListener<String>()
+    {
+        @Override
+        public void changed(ObservableValue<? extends String> observable, String oldValue, String newValue)
+        {
+            synchronized (ms_lock)
+            {
+                for (Stage l_stage : ms_open)
+                {
+                    if (l_stage.titleProperty() == observable)
+                    {
+                        unindex(l_stage);
+                        index(l_stage);
+                        notifyWaiters(l_stage);
+                        break;
+                    }
+                }
+            }
+        }
+    };
+
+    private static final ListChangeListener<Stage> STAGES_LISTENER = new ListChangeListener<Stage>()
+    {
+        @Override
+        public void onChanged(ListChangeListener.Change<? extends Stage> c)
+        {
+            while (c.next())
+            {
+                for (Stage l_stage : c.getRemoved())
+                {
+                    closed(l_stage);
+                }
+                for (Stage l_stage : c.getAddedSubList())
+                {
+                    opened(l_stage);
+                }
+            }
+        }
+    };
+
+    private GcStageRegistryFX()
+    {
+        // Prevent instantiation
+    }
+
+    /**
+     * Add a listener which gets notified about opened and closed stages. The listener is notified about the stages
+     * which are already open as well, it may get notified twice about a stage which is opened concurrently.
+     */
+    public static void addListener(final IListener listener)
+    {
+        install();
+        ms_listeners.add(listener);
+
+        if (GcUtilsFX.isPlatformAlive())
+        {
+            runInWindowingThread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    final List<Stage> l_open;
+                    synchronized (ms_lock)
+                    {
+                        l_open = new ArrayList<Stage>(ms_open);
+                    }
+                    for (Stage l_stage : l_open)
+                    {
+                        listener.stageOpened(l_stage);
+                    }
+                }
+            });
+        }
+    }
+
+    public static void removeListener(IListener listener)
+    {
+        ms_listeners.remove(listener);
+    }
+
+    /**
+     * @return The first open stage with a matching title or <code>null</code> if there is none.
+     */
+    static Stage find(GcTextMatcher title)
+    {
+        install();
+        synchronized (ms_lock)
+        {
+            return findLocked(title);
+        }
+    }
+
+    /**
+     * Wait for a stage with a matching title. Returns immediately if such a stage is open.
+     *
+     * @param timeout The time in milliseconds to wait at most.
+     * @return The stage or <code>null</code> if no matching stage was opened within the timeout.
+     */
+    static Stage await(GcTextMatcher title, long timeout)
+    {
+        install();
+
+        final Waiter l_waiter = new Waiter(title);
+        synchronized (ms_lock)
+        {
+            final Stage l_stage = findLocked(title);
+            if (l_stage != null)
+            {
+                return l_stage;
+            }
+            ms_waiters.add(l_waiter);
+        }
+
+        try
+        {
+            GcUtils.await(l_waiter.m_found, timeout);
+        }
+        finally
+        {
+            synchronized (ms_lock)
+            {
+                ms_waiters.remove(l_waiter);
+            }
+        }
+
+        synchronized (ms_lock)
+        {
+            return l_waiter.m_stage;
+        }
+    }
+
+    private static void install()
+    {
+        synchronized (ms_lock)
+        {
+            if (ms_installed)
+            {
+                return;
+            }
+            ms_installed = true;
+
+            if (!GcUtilsFX.isPlatformAlive())
+            {
+                // The windowing thread does not exist yet, so nobody else modifies the list of stages at the moment
+                StageHelper.getStages().addListener(STAGES_LISTENER);
+                return;
+            }
+        }
+
+        runInWindowingThread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                StageHelper.getStages().addListener(STAGES_LISTENER);
+                for (Stage l_stage : StageHelper.getStages())
+                {
+                    opened(l_stage);
+                }
+            }
+        });
+    }
+
+    /**
+     * Run the given runnable in the windowing thread and wait for it. Called in the windowing thread, the runnable is
+     * run directly instead of waiting for itself.
+     */
+    private static void runInWindowingThread(Runnable runnable)
+    {
+        if (Platform.isFxApplicationThread())
+        {
+            runnable.run();
+        }
+        else
+        {
+            GcUtilsFX.runLaterAndWait(runnable);
+        }
+    }
+
+    private static void opened(Stage stage)
+    {
+        synchronized (ms_lock)
+        {
+            if (ms_titles.containsKey(stage))
+            {
+                return;
+            }
+
+            ms_open.add(stage);
+            index(stage);
+            stage.titleProperty().addListener(TITLE_LISTENER);
+            notifyWaiters(stage);
+        }
+
+        for (IListener l_listener : ms_listeners)
+        {
+            l_listener.stageOpened(stage);
+        }
+    }
+
+    private static void closed(Stage stage)
+    {
+        synchronized (ms_lock)
+        {
+            if (!ms_titles.containsKey(stage))
+            {
+                return;
+            }
+
+            stage.titleProperty().removeListener(TITLE_LISTENER);
+            unindex(stage);
+            ms_open.remove(stage);
+        }
+
+        for (IListener l_listener : ms_listeners)
+        {
+            l_listener.stageClosed(stage);
+        }
+    }
+
+    private static Stage findLocked(GcTextMatcher title)
+    {
+        // The number of different titles is small, the first opened stage wins like in the list of the toolkit
+        Stage l_first = null;
+        for (Map.Entry<String, List<Stage>> l_entry : ms_byTitle.entrySet())
+        {
+            if (title.matches(l_entry.getKey()))
+            {
+                for (Stage l_stage : l_entry.getValue())
+                {
+                    if (l_first == null || ms_open.indexOf(l_stage) < ms_open.indexOf(l_first))
+                    {
+                        l_first = l_stage;
+                    }
+                }
+            }
+        }
+        return l_first;
+    }
+
+    private static void notifyWaiters(Stage stage)
+    {
+        for (Waiter l_waiter : ms_waiters)
+        {
+            if (l_waiter.m_stage == null && l_waiter.m_title.matches(stage.getTitle()))
+            {
+                l_waiter.m_stage = stage;
+                l_waiter.m_found.countDown();
+            }
+        }
+    }
+
+    private static void index(Stage stage)
+    {
+        final String l_title = stage.getTitle();
+        ms_titles.put(stage, l_title);
+
+        List<Stage> l_stages = ms_byTitle.get(l_title);
+        if (l_stages == null)
+        {
+            l_stages = new ArrayList<Stage>(1);
+            ms_byTitle.put(l_title, l_stages);
+        }
+        l_stages.add(stage);
+    }
+
+    private static void unindex(Stage stage)
+    {
+        final String l_title = ms_titles.remove(stage);
+        final List<Stage> l_stages = ms_byTitle.get(l_title);
+        if (l_stages != null && l_stages.remove(stage) && l_stages.isEmpty())
+        {
+            ms_byTitle.remove(l_title);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+// Copyright 2014 SICK AG. All rights reserved.
+package de.sick.guicheck.fx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.ListChangeListener;
+import javafx.stage.Stage;
+
+import com.sun.javafx.stage.StageHelper;
+import com.sun.javafx.tk.TKPulseListener;
+import com.sun.javafx.tk.Toolkit;
+
+import de.sick.guicheck.GcException;
+import de.sick.guicheck.GcTimeBudget;
+import de.sick.guicheck.GcUtils;
+
+/**
+ * Tracks the startup of an application until a {@link GcReadinessFX.ICondition} is met. Listeners on the list of
+ * stages, on the showing property of each stage and on the pulses of the toolkit check the condition whenever something
+ * relevant happens, so there is no polling.
+ * <p>
+ * On the way the tracker records the time until the first stage is shown and the time until the first pulse afterwards,
+ * i.e. until the first stage is rendered.
+ *
+ * @author agent (created)
+ */
+final class GcStartupFX
+{
+    private static final int CHECK_INTERVAL = 500;
+
+    private final GcReadinessFX.ICondition m_condition;
+    private final CountDownLatch m_ready = new CountDownLatch(1);
+    private final long m_start = System.nanoTime();
+    private volatile long m_firstStage = -1;
+    private volatile long m_firstPulse = -1;
+    private volatile Throwable m_failure;
+
+    // Only accessed in the windowing thread
+    private final List<Stage> m_stages = new ArrayList<Stage>();
+    private boolean m_pulseListenerInstalled;
+
+    private final ChangeListener<Boolean> m_showingListener = new ChangeListener<Boolean>()
+    {
+        @Override
+        public void changed(ObservableValue<? extends Boolean> observable, Boolean oldValue, Boolean newValue)
+        {
+            if (newValue)
+            {
+                stageShown();
+            }
+            check();
+        }
+    };
+
+    private final ListChangeListener<Stage> m_stagesListener = new ListChangeListener<Stage>()
+    {
+        @Override
+        public void onChanged(ListChangeListener.Change<? extends Stage> c)
+        {
+            while (c.next())
+            {
+                for (Stage l_stage : c.getRemoved())
+                {
+                    l_stage.showingProperty().removeListener(m_showingListener);
+                    m_stages.remove(l_stage);
+                }
+                for (Stage l_stage : c.getAddedSubList())
+                {
+                    addStage(l_stage);
+                }
+            }
+            check();
+        }
+    };
+
+    /**
+     * The toolkit only keeps weak references to its pulse listeners, this tracker keeps the strong one.
+     */
+    private final TKPulseListener m_pulseListener = new TKPulseListener()
+    {
+        @Override
+        public void pulse()
+        {
+            if (m_firstStage >= 0 && m_firstPulse < 0)
+            {
+                m_firstPulse = System.nanoTime() - m_start;
+            }
+            check();
+        }
+    };
+
+    GcStartupFX(GcReadinessFX.ICondition condition)
+    {
+        m_condition = condition;
+    }
+
+    /**
+     * Attach the listeners. Must be called before the application is started.
+     */
+    void install()
+    {
+        if (!GcUtilsFX.isPlatformAlive())
+        {
+            // The windowing thread does not exist yet, so nobody else modifies the list of stages at the moment
+            StageHelper.getStages().addListener(m_stagesListener);
+            return;
+        }
+
+        // The platform is already running, e.g. for the second application of a test suite
+        Platform.runLater(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                StageHelper.getStages().addListener(m_stagesListener);
+                for (Stage l_stage : StageHelper.getStages())
+                {
+                    addStage(l_stage);
+                }
+                check();
+            }
+        });
+    }
+
+    /**
+     * Remove all listeners again.
+     */
+    void uninstall()
+    {
+        final Runnable l_uninstall = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                StageHelper.getStages().removeListener(m_stagesListener);
+                for (Stage l_stage : m_stages)
+                {
+                    l_stage.showingProperty().removeListener(m_showingListener);
+                }
+                m_stages.clear();
+                if (m_pulseListenerInstalled)
+                {
+                    Toolkit.getToolkit().removePostSceneTkPulseListener(m_pulseListener);
+                }
+            }
+        };
+
+        if (GcUtilsFX.isPlatformAlive())
+        {
+            Platform.runLater(l_uninstall);
+        }
+        else
+        {
+            l_uninstall.run();
+        }
+    }
+
+    /**
+     * Called by the thread starting the application if the start failed.
+     */
+    void failed(Throwable failure)
+    {
+        m_failure = failure;
+        m_ready.countDown();
+    }
+
+    /**
+     * Wait until the readiness condition is met.
+     *
+     * @throws GcException Thrown if the application failed to start, the condition is not met within the given timeout
+     *             or the {@link GcTimeBudget} is exhausted.
+     */
+    void await(long timeout)
+    {
+        final long l_deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        while (!GcUtils.await(m_ready, CHECK_INTERVAL))
+        {
+            GcTimeBudget.check("waiting for " + m_condition);
+            if (System.nanoTime() - l_deadline >= 0)
+            {
+                throw new GcException("The JavaFX application is not ready after " + timeout + " ms, still waiting for " + m_condition);
+            }
+        }
+
+        if (m_failure != null)
+        {
+            throw new GcException("Failed to start the JavaFX application", m_failure);
+        }
+    }
+
+    /**
+     * @return The time in milliseconds until the first stage was shown or -1 if no stage was shown yet.
+     */
+    long getTimeToFirstStage()
+    {
+        final long l_time = m_firstStage;
+        return l_time < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(l_time);
+    }
+
+    /**
+     * @return The time in milliseconds until the first pulse after the first stage was shown or -1 if there was none.
+     */
+    long getTimeToFirstPulse()
+    {
+        final long l_time = m_firstPulse;
+        return l_time < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(l_time);
+    }
+
+    private void addStage(Stage stage)
+    {
+        if (!m_pulseListenerInstalled)
+        {
+            Toolkit.getToolkit().addPostSceneTkPulseListener(m_pulseListener);
+            m_pulseListenerInstalled = true;
+        }
+
+        stage.showingProperty().addListener(m_showingListener);
+        m_stages.add(stage);
+        if (stage.isShowing())
+        {
+            stageShown();
+        }
+    }
+
+    private void stageShown()
+    {
+        if (m_firstStage < 0)
+        {
+            m_firstStage = System.nanoTime() - m_start;
+        }
+    }
+
+    private void check()
+    {
+        if (m_ready.getCount() == 0)
+        {
+            return;
+        }
+
+        try
+        {
+            if (m_condition.isReady())
+            {
+                m_ready.countDown();
+            }
+        }
+        catch (RuntimeException e)
+        {
+            failed(e);
+        }
+    }
+}
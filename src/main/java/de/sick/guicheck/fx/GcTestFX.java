@@ -1,19 +1,41 @@
 // Copyright 2013 SICK AG. All rights reserved.
 package de.sick.guicheck.fx;
 
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
-import javafx.collections.ObservableList;
+import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.stage.Stage;
 
-import com.sun.javafx.stage.StageHelper;
-
 import de.sick.guicheck.GcAssertException;
 import de.sick.guicheck.GcException;
+import de.sick.guicheck.GcIsolatingClassLoader;
+import de.sick.guicheck.GcSnapshotWriter;
+import de.sick.guicheck.GcTextMatcher;
+import de.sick.guicheck.GcTimeBudget;
 import de.sick.guicheck.GcUtils;
 
 /**
  * Base class of all GUIcheck tests based on JavaFX.
+ * <p>
+ * The JavaFX toolkit cannot be restarted within a JVM, so it keeps running for all test classes. Each test class can
+ * load its application into a fresh {@link GcIsolatingClassLoader} and close it again via {@link #stopApp()}:
+ *
+ * <pre>
+ * &#064;BeforeClass
+ * public static void setUpBeforeClass()
+ * {
+ *     startApp(createIsolatedClassLoader(), &quot;de.sick.MyApp&quot;);
+ * }
+ *
+ * &#064;AfterClass
+ * public static void tearDownAfterClass()
+ * {
+ *     stopApp();
+ * }
+ * </pre>
  * 
  * @author linggol (created)
  */
@@ -21,19 +43,87 @@ public abstract class GcTestFX
 {
     private static final int FIRST_STAGE_VISIBLE_TIMEOUT = 60000;
 
+    private static boolean ms_headless = GcHeadlessFX.isRequested();
+    private static long ms_timeToFirstStage = -1;
+    private static long ms_timeToFirstPulse = -1;
+
     /**
-     * Starts the given main class with the given arguments using the classloader of the current thread.
+     * The application started by GUIcheck itself or <code>null</code> if it was started via its main method.
+     */
+    private static volatile Application ms_application;
+    private static ClassLoader ms_loader;
+
+    /**
+     * Run the applications started afterwards on the headless Monocle platform with software rendering. The headless
+     * mode can also be enabled with the system property <code>guicheck.headless=true</code>. It must be selected
+     * before the first application is started.
+     *
+     * @see GcHeadlessFX
+     */
+    protected static final void setHeadless(boolean headless)
+    {
+        ms_headless = headless;
+    }
+
+    /**
+     * Starts the given main class with the given arguments using the classloader of the current thread. The method
+     * returns as soon as the first stage is shown.
      */
     protected static final void startApp(final String clazz, final String... args)
     {
-        startApp(Thread.currentThread().getContextClassLoader(), clazz, args);
+        startApp(Thread.currentThread().getContextClassLoader(), GcReadinessFX.firstStageShown(), clazz, args);
     }
 
     /**
-     * Starts the given main class with the given arguments using the given classloader.
+     * Starts the given main class with the given arguments using the classloader of the current thread. The method
+     * returns as soon as the given condition is met.
+     *
+     * @see GcReadinessFX
+     */
+    protected static final void startApp(GcReadinessFX.ICondition ready, final String clazz, final String... args)
+    {
+        startApp(Thread.currentThread().getContextClassLoader(), ready, clazz, args);
+    }
+
+    /**
+     * Starts the given main class with the given arguments using the given classloader. The method returns as soon as
+     * the first stage is shown.
      */
     protected static final void startApp(ClassLoader loader, final String clazz, final String... args)
     {
+        startApp(loader, GcReadinessFX.firstStageShown(), clazz, args);
+    }
+
+    /**
+     * Starts the given main class with the given arguments using the given classloader. The method returns as soon as
+     * the given condition is met.
+     *
+     * @throws GcException Thrown if the main method fails or the condition is not met within 60 seconds.
+     * @see GcReadinessFX
+     */
+    protected static final void startApp(ClassLoader loader, GcReadinessFX.ICondition ready, final String clazz, final String... args)
+    {
+        if (ms_headless)
+        {
+            GcHeadlessFX.configure(loader);
+        }
+
+        // Closing all stages of an application must not end the toolkit, not even a splash stage closed during startup
+        Platform.setImplicitExit(false);
+
+        // The listeners must be in place before the application shows its first stage
+        final GcStartupFX l_startup = new GcStartupFX(ready);
+        l_startup.install();
+
+        // Application.launch works only once, afterwards GUIcheck runs the life cycle itself
+        final boolean l_toolkitRunning = GcUtilsFX.isPlatformAlive();
+        ms_loader = loader;
+        if (l_toolkitRunning)
+        {
+            // A new windowing thread inherits the loader from the launching thread, a running one is switched over
+            GcLauncherFX.setContextClassLoader(loader);
+        }
+
         Thread l_thread = new Thread("GUIcheck-FX-Runner")
         {
             @Override
@@ -41,14 +131,25 @@ public abstract class GcTestFX
             {
                 try
                 {
-                    // Load the class and invoke the main method
                     Class<?> l_clazz = Thread.currentThread().getContextClassLoader().loadClass(clazz);
-                    Method l_method = l_clazz.getMethod("main", String[].class);
+                    if (l_toolkitRunning && Application.class.isAssignableFrom(l_clazz))
+                    {
+                        ms_application = GcLauncherFX.launch(l_clazz.asSubclass(Application.class), args);
+                        return;
+                    }
 
+                    // Invoke the main method
+                    Method l_method = l_clazz.getMethod("main", String[].class);
                     l_method.invoke(null, new Object[] {args});
                 }
+                catch (InvocationTargetException e)
+                {
+                    l_startup.failed(e.getCause());
+                    throw new GcException("Failed to invoke main method", e);
+                }
                 catch (Exception e)
                 {
+                    l_startup.failed(e);
                     throw new GcException("Failed to invoke main method", e);
                 }
             }
@@ -57,80 +158,152 @@ public abstract class GcTestFX
         l_thread.setContextClassLoader(loader);
         l_thread.start();
 
-        // Wait for platform to start and the first stage to become visible
-        long l_start = System.currentTimeMillis();
-        boolean l_initialized = false;
-        while (System.currentTimeMillis() - l_start < FIRST_STAGE_VISIBLE_TIMEOUT)
+        try
         {
-            if (GcUtilsFX.isPlatformAlive())
-            {
-                ObservableList<Stage> l_stages = StageHelper.getStages();
-                if (l_stages.size() > 0 && l_stages.get(0).isShowing())
-                {
-                    l_initialized = true;
-                    GcUtilsFX.waitForIdle();
-                    break;
-                }
+            l_startup.await(FIRST_STAGE_VISIBLE_TIMEOUT);
+        }
+        finally
+        {
+            l_startup.uninstall();
+        }
+
+        ms_timeToFirstStage = l_startup.getTimeToFirstStage();
+        ms_timeToFirstPulse = l_startup.getTimeToFirstPulse();
+        System.out.println("Application " + clazz + " started" + (ms_headless ? " headless" : "") + ": first stage after " + ms_timeToFirstStage
+            + " ms, first pulse after " + ms_timeToFirstPulse + " ms");
+
+        GcUtilsFX.waitForIdle();
+    }
 
-                GcUtilsFX.waitForIdle();
+    /**
+     * Stop the application started last: close all stages and call {@link Application#stop()} if the application was
+     * started by GUIcheck. The stop method of the first application started via its main method is not called, the
+     * JavaFX launcher does that when the JVM exits. The toolkit keeps running for the next application. Pending
+     * snapshots are written before.
+     *
+     * @throws GcException Thrown if the stop method of the application fails.
+     */
+    protected static final void stopApp()
+    {
+        GcSnapshotWriter.flush();
+        if (!GcUtilsFX.isPlatformAlive())
+        {
+            return;
+        }
+
+        GcLauncherFX.closeAllStages();
+
+        final Application l_application = ms_application;
+        ms_application = null;
+        try
+        {
+            if (l_application != null)
+            {
+                GcLauncherFX.stop(l_application);
             }
         }
+        finally
+        {
+            closeLoader();
+        }
+
+        GcUtilsFX.waitForIdle();
+    }
+
+    /**
+     * @return A new child first classloader for the class path of the JVM, to be used with
+     *         {@link #startApp(ClassLoader, String, String...)}.
+     */
+    protected static final ClassLoader createIsolatedClassLoader()
+    {
+        return new GcIsolatingClassLoader(Thread.currentThread().getContextClassLoader());
+    }
 
-        if (!l_initialized)
+    private static void closeLoader()
+    {
+        final ClassLoader l_loader = ms_loader;
+        ms_loader = null;
+        if (l_loader instanceof GcIsolatingClassLoader)
         {
-            throw new GcException("The JavaFX platform did not initialize");
+            // The windowing thread outlives the application, it must not keep loading classes from a closed loader
+            GcLauncherFX.setContextClassLoader(l_loader.getParent());
+            try
+            {
+                ((GcIsolatingClassLoader)l_loader).close();
+            }
+            catch (IOException e)
+            {
+                throw new GcException("Failed to close the classloader of the application", e);
+            }
         }
     }
 
     /**
-     * Return the stage with the given title.
+     * @return The time in milliseconds from the start of the last application until its first stage was shown or -1 if
+     *         unknown, e.g. because the stage was already shown before.
+     */
+    protected static final long getTimeToFirstStage()
+    {
+        return ms_timeToFirstStage;
+    }
+
+    /**
+     * @return The time in milliseconds from the start of the last application until the first pulse after its first
+     *         stage was shown, i.e. until the stage was rendered for the first time. -1 if unknown.
+     */
+    protected static final long getTimeToFirstPulse()
+    {
+        return ms_timeToFirstPulse;
+    }
+
+    /**
+     * Return the stage with the given title. If no such stage is open, this method waits for it to be opened.
      * 
      * @param titleRegEx <code>null</code> means the title is not set
+     * @see GcStageRegistryFX
      */
     public static final GcStageFX stage(final String titleRegEx)
     {
-        return GcUtilsFX.eval(new GcUtils.IEvaluator<GcStageFX>()
-        {
-            @Override
-            public GcStageFX eval()
-            {
-                for (Stage l_stage : StageHelper.getStages())
-                {
-                    if (GcUtils.startsWithOrMatches(l_stage.getTitle(), titleRegEx))
-                    {
-                        return new GcStageFX(l_stage);
-                    }
-                }
-
-                throw new GcAssertException("Cannot find stage with title: " + titleRegEx);
-            }
-        });
+        return stage(titleRegEx, GcUtilsFX.EVALUATION_TIMEOUT);
     }
 
     /**
-     * Return the stage with the given title.
+     * Return the stage with the given title. If no such stage is open, this method looks for it again the given number
+     * of times.
      * 
      * @param titleRegEx <code>null</code> means the title is not set
      * @param evalRetries the number of retries
      * @param evalDelay the time in milliseconds per retry
+     * @see GcUtilsFX#eval(GcUtils.IEvaluator, int, int)
      */
     public static final GcStageFX stage(final String titleRegEx, int evalRetries, int evalDelay)
     {
+        final GcTextMatcher l_title = GcTextMatcher.of(titleRegEx);
         return GcUtilsFX.eval(new GcUtils.IEvaluator<GcStageFX>()
         {
             @Override
             public GcStageFX eval()
             {
-                for (Stage l_stage : StageHelper.getStages())
+                final Stage l_stage = GcStageRegistryFX.find(l_title);
+                if (l_stage == null)
                 {
-                    if (GcUtils.startsWithOrMatches(l_stage.getTitle(), titleRegEx))
-                    {
-                        return new GcStageFX(l_stage);
-                    }
+                    throw new GcAssertException("Cannot find stage with title: " + titleRegEx);
                 }
-
-                throw new GcAssertException("Cannot find stage with title: " + titleRegEx);
+                return GcStageFX.of(l_stage);
             }
         }, evalRetries, evalDelay);
     }
+
+    private static GcStageFX stage(final String titleRegEx, long timeout)
+    {
+        final Stage l_stage = GcStageRegistryFX.await(GcTextMatcher.of(titleRegEx), timeout);
+        if (l_stage == null)
+        {
+            final GcAssertException l_exception = new GcAssertException("Cannot find stage with title: " + titleRegEx);
+            GcTimeBudget.check("waiting for stage " + titleRegEx, l_exception);
+            throw l_exception;
+        }
+
+        return GcStageFX.of(l_stage);
+    }
 }
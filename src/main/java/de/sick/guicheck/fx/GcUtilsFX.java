@@ -6,11 +6,9 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
 
 import javafx.application.Platform;
 import javafx.scene.Node;
-import javafx.scene.Parent;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuItem;
 
@@ -19,8 +17,10 @@ import com.sun.javafx.tk.Toolkit;
 
 import de.sick.guicheck.GcAssertException;
 import de.sick.guicheck.GcException;
+import de.sick.guicheck.GcTimeBudget;
 import de.sick.guicheck.GcUtils;
 import de.sick.guicheck.GcUtils.IEvaluator;
+import de.sick.guicheck.GcUtils.IdleMode;
 
 /**
  * General helpers for GUIcheck tests based on JavaFX.
@@ -29,7 +29,10 @@ import de.sick.guicheck.GcUtils.IEvaluator;
  */
 public final class GcUtilsFX
 {
-    private static final int EVALUATION_RETRIES = 10;
+    /**
+     * The time in milliseconds a check may take to succeed.
+     */
+    static final int EVALUATION_TIMEOUT = 500;
     private static final int EVALUATION_DELAY = 50;
     private static final int IDLE_COUNT = 3;
     private static final int RUN_LATER_AND_WAIT_TIMEOUT = 500;
@@ -37,6 +40,17 @@ public final class GcUtilsFX
     // EasyMock needs a litte time for synchronisation between UI and mocked objects
     private static int ms_slowMotionFactor = 10;
 
+    private static IdleMode ms_idleMode = IdleMode.EVENT_DRIVEN;
+
+    private static final Runnable IDLE_WAIT = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            waitForIdle();
+        }
+    };
+
     /**
      * Private method in quantum toolkit to get the current windowing thread. This method is used to detect if JavaFX is
      * fully initialized and running.
@@ -59,18 +73,37 @@ public final class GcUtilsFX
     {
         // Prevent instantiation
     }
-    
+
+    /**
+     * Set the sleep time in milliseconds after each idle round trip. Only used in {@link IdleMode#SLEEP}.
+     */
     public static void setSlowMotion(final int factor)
     {
         ms_slowMotionFactor = factor;
     }
 
+    /**
+     * Set the strategy used by {@link #waitForIdle()}. The default is {@link IdleMode#EVENT_DRIVEN}. Switch to
+     * {@link IdleMode#SLEEP} if the application needs additional time for synchronisation, e.g. with mocked objects.
+     */
+    public static void setIdleMode(final IdleMode mode)
+    {
+        ms_idleMode = mode;
+    }
+
     /**
      * Wait for the windowing thread to become idle.
      */
     public static void waitForIdle()
     {
-        waitForIdle(IDLE_COUNT, ms_slowMotionFactor);
+        if (ms_idleMode == IdleMode.EVENT_DRIVEN)
+        {
+            GcIdleDetectorFX.waitForIdle();
+        }
+        else
+        {
+            waitForIdle(IDLE_COUNT, ms_slowMotionFactor);
+        }
     }
 
     /**
@@ -81,39 +114,54 @@ public final class GcUtilsFX
         for (int i = 0; i < count; i++)
         {
             runLaterAndWait(GcUtils.NOOP_RUNNABLE);
-            GcUtils.sleepAndIgnoreInterrupts(sleep);
+            GcUtils.sleep(sleep);
         }
     }
 
     /**
-     * Run the given runnable in the windowing thread and wait until its finished.
+     * Run the given runnable in the windowing thread and wait until its finished. An exception thrown by the runnable,
+     * e.g. by an event handler of the application, is rethrown in the calling thread.
      */
     public static void runLaterAndWait(final Runnable runnable)
     {
         final CountDownLatch l_latch = new CountDownLatch(1);
+        final Throwable[] l_failure = new Throwable[1];
         Platform.runLater(new Runnable()
         {
             @Override
             public void run()
             {
-                runnable.run();
-                l_latch.countDown();
+                try
+                {
+                    runnable.run();
+                }
+                catch (RuntimeException | Error e)
+                {
+                    l_failure[0] = e;
+                }
+                finally
+                {
+                    l_latch.countDown();
+                }
             }
         });
 
-        while (true)
+        // Always check if the platform is still alive, otherwise when closing the last stage,
+        // this loop hangs forever.
+        while (isPlatformAlive() && !GcUtils.await(l_latch, RUN_LATER_AND_WAIT_TIMEOUT))
         {
-            try
+            GcTimeBudget.check("waiting for the JavaFX application thread");
+        }
+
+        if (l_latch.getCount() == 0)
+        {
+            if (l_failure[0] instanceof RuntimeException)
             {
-                // Always check if the platform is still alive, otherwise when closing the last stage,
-                // this loop hangs forever.
-                if (!isPlatformAlive() || l_latch.await(RUN_LATER_AND_WAIT_TIMEOUT, TimeUnit.MILLISECONDS))
-                {
-                    break;
-                }
+                throw (RuntimeException)l_failure[0];
             }
-            catch (final InterruptedException l_exception)
+            if (l_failure[0] instanceof Error)
             {
+                throw (Error)l_failure[0];
             }
         }
     }
@@ -138,7 +186,7 @@ public final class GcUtilsFX
     {
         while (StageHelper.getStages().size() > 0)
         {
-            GcUtils.sleepAndIgnoreInterrupts(500);
+            GcUtils.sleep(500);
         }
 
         Platform.exit();
@@ -158,60 +206,51 @@ public final class GcUtilsFX
      */
     public static void treeVisibleIs(final Node fxNode, final boolean visible)
     {
-    	if (fxNode.isVisible())
-    	{
-        	final Parent l_parent = fxNode.getParent();
-        	if (l_parent == null)
-        	{
-        		if (!visible)
-        		{
-        			throw new GcException("Unexpected value of treeVisible: Expected: false, Actual: true");
-        		}
-        	}
-        	else
-        	{
-        		treeVisibleIs(l_parent, visible);
-        	}
-    	}
-    	else
-    	{
-    		if (visible)
-    		{
-    			throw new GcException("Unexpected value of treeVisible: Expected: true, Actual: false");    			
-    		}
-    	}
+        final boolean l_visible = isTreeVisible(fxNode);
+        if (l_visible != visible)
+        {
+            throw new GcException("Unexpected value of treeVisible: Expected: " + visible + ", Actual: " + l_visible);
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the given node and all of its parents are visible.
+     */
+    static boolean isTreeVisible(final Node fxNode)
+    {
+        for (Node l_node = fxNode; l_node != null; l_node = l_node.getParent())
+        {
+            if (!l_node.isVisible())
+            {
+                return false;
+            }
+        }
+
+        return true;
     }
 
     /**
      * Evaluate the given evaluator with retries and timeouts. Retries are only done automatically if the evaluator
      * throws a {@link GcAssertException}. After each try this method waits for the windowing thread to become idle.
+     *
+     * @see GcUtils#eval(IEvaluator, long, long, Runnable)
      */
     public static <T> T eval(final IEvaluator<T> e)
     {
-        return eval(e, EVALUATION_RETRIES, EVALUATION_DELAY);
+        return GcUtils.eval(e, EVALUATION_TIMEOUT, EVALUATION_DELAY, IDLE_WAIT);
     }
 
     /**
      * Evaluate the given evaluator with retries and timeouts. Retries are only done automatically if the evaluator
      * throws a {@link GcAssertException}. After each try this method waits for the windowing thread to become idle.
+     *
+     * @param evalRetries The minimum number of tries, together with the delay this gives the timeout of the evaluation.
+     * @param evalDelay The initial delay in milliseconds between two tries, 0 retries after the idle wait only.
+     * @see GcUtils#eval(IEvaluator, long, long, int, Runnable)
      */
     public static <T> T eval(final IEvaluator<T> e, int evalRetries, int evalDelay)
     {
-        for (int i = 0; i < evalRetries - 1; i++)
-        {
-            try
-            {
-                return e.eval();
-            }
-            catch (final GcAssertException l_exception)
-            {
-                GcUtils.sleepAndIgnoreInterrupts(evalDelay);
-                waitForIdle();
-            }
-        }
-    
-        // The last time we try it without catching any exceptions
-        return e.eval();
+        return GcUtils.eval(e, (long)evalRetries * evalDelay, evalDelay, evalRetries, IDLE_WAIT);
     }
     
     /**
@@ -0,0 +1,336 @@
+// Copyright 2014 SICK AG. All rights reserved.
+package de.sick.guicheck.swing;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Window;
+import java.awt.event.ContainerEvent;
+import java.awt.event.ContainerListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+
+import de.sick.guicheck.GcTextMatcher;
+
+/**
+ * An index of the components of a window by name and class. The index is built once per window and kept up to date via
+ * container listeners on each container of the window and property change listeners on each indexed component.
+ * <p>
+ * Like the recursive search of {@link GcComponentSwing} the index only contains {@link JComponent}s, but it descends
+ * into every {@link Container}, so components nested in heavyweight AWT containers are found as well. If several
+ * components match, the one found first by the recursive search is returned: the direct children of a container are
+ * checked before its grandchildren.
+ *
+ * @author agent (created)
+ */
+final class GcComponentIndexSwing
+{
+    /**
+     * The values are only weakly referenced because an index references all components of its window. The listeners
+     * attached to the components keep the index alive as long as its window lives.
+     */
+    private static final Map<Window, WeakReference<GcComponentIndexSwing>> ms_indexes = new WeakHashMap<Window, WeakReference<GcComponentIndexSwing>>();
+
+    private final Map<String, Set<JComponent>> m_byName = new HashMap<String, Set<JComponent>>();
+    private final Map<Class<?>, Set<JComponent>> m_byClass = new HashMap<Class<?>, Set<JComponent>>();
+    private final Map<JComponent, String> m_names = new HashMap<JComponent, String>();
+    private final Set<Container> m_containers = new HashSet<Container>();
+    private boolean m_built;
+
+    private final ContainerListener m_containerListener = new ContainerListener()
+    {
+        @Override
+        public void componentAdded(ContainerEvent e)
+        {
+            synchronized (GcComponentIndexSwing.this)
+            {
+                addTree(e.getChild());
+            }
+        }
+
+        @Override
+        public void componentRemoved(ContainerEvent e)
+        {
+            synchronized (GcComponentIndexSwing.this)
+            {
+                // Components moved to another container may already be indexed there
+                final Component l_child = e.getChild();
+                if (l_child.getParent() == null || l_child.getParent() == e.getContainer())
+                {
+                    removeTree(l_child);
+                }
+            }
+        }
+    };
+
+    private final PropertyChangeListener m_nameListener = new PropertyChangeListener()
+    {
+        @Override
+        public void propertyChange(PropertyChangeEvent e)
+        {
+            synchronized (GcComponentIndexSwing.this)
+            {
+                final JComponent l_component = (JComponent)e.getSource();
+                if (m_names.containsKey(l_component))
+                {
+                    remove(m_byName, m_names.get(l_component), l_component);
+                    m_names.put(l_component, l_component.getName());
+                    put(m_byName, l_component.getName(), l_component);
+                }
+            }
+        }
+    };
+
+    private GcComponentIndexSwing()
+    {
+    }
+
+    /**
+     * Return the index of the window containing the given component. The index is built on first access.
+     *
+     * @return The index or <code>null</code> if the component is not part of a window or the index is built by another
+     *         thread at the moment.
+     */
+    static GcComponentIndexSwing getIndex(JComponent component)
+    {
+        final Window l_window = SwingUtilities.getWindowAncestor(component);
+        if (l_window == null)
+        {
+            return null;
+        }
+
+        final GcComponentIndexSwing l_index;
+        synchronized (ms_indexes)
+        {
+            final WeakReference<GcComponentIndexSwing> l_ref = ms_indexes.get(l_window);
+            if (l_ref != null && l_ref.get() != null)
+            {
+                return l_ref.get().isBuilt() ? l_ref.get() : null;
+            }
+
+            l_index = new GcComponentIndexSwing();
+            ms_indexes.put(l_window, new WeakReference<GcComponentIndexSwing>(l_index));
+        }
+
+        // The listeners must be attached in the EDT
+        final Runnable l_build = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                l_index.build(l_window);
+            }
+        };
+
+        if (SwingUtilities.isEventDispatchThread())
+        {
+            l_build.run();
+        }
+        else
+        {
+            GcUtilsSwing.runLaterAndWait(l_build);
+        }
+
+        return l_index;
+    }
+
+    private synchronized boolean isBuilt()
+    {
+        return m_built;
+    }
+
+    private synchronized void build(Window window)
+    {
+        window.addContainerListener(m_containerListener);
+        for (Component l_child : window.getComponents())
+        {
+            addTree(l_child);
+        }
+        m_built = true;
+    }
+
+    /**
+     * Find the first component below the given parent with a name starting with or matching the given matcher.
+     */
+    synchronized JComponent findByName(JComponent parent, GcTextMatcher name)
+    {
+        // The number of different names is much smaller than the number of components
+        final List<JComponent> l_candidates = new ArrayList<JComponent>();
+        for (Map.Entry<String, Set<JComponent>> l_entry : m_byName.entrySet())
+        {
+            if (name.matches(l_entry.getKey()))
+            {
+                l_candidates.addAll(l_entry.getValue());
+            }
+        }
+
+        return first(parent, l_candidates);
+    }
+
+    /**
+     * Find the first component below the given parent which is an instance of the given class.
+     */
+    synchronized JComponent findByClass(JComponent parent, Class<?> clazz)
+    {
+        final List<JComponent> l_candidates = new ArrayList<JComponent>();
+        for (Map.Entry<Class<?>, Set<JComponent>> l_entry : m_byClass.entrySet())
+        {
+            if (clazz.isAssignableFrom(l_entry.getKey()))
+            {
+                l_candidates.addAll(l_entry.getValue());
+            }
+        }
+
+        return first(parent, l_candidates);
+    }
+
+    /**
+     * @return The candidate found first by the recursive search below the given parent.
+     */
+    private static JComponent first(JComponent parent, List<JComponent> candidates)
+    {
+        JComponent l_first = null;
+        List<Component> l_firstPath = null;
+        for (JComponent l_candidate : candidates)
+        {
+            final List<Component> l_path = getPath(parent, l_candidate);
+            // The parent itself is no candidate, only components below it
+            if (l_path != null && !l_path.isEmpty() && (l_firstPath == null || compareSearchOrder(l_path, l_firstPath) < 0))
+            {
+                l_first = l_candidate;
+                l_firstPath = l_path;
+            }
+        }
+
+        return l_first;
+    }
+
+    /**
+     * @return The components from the direct child of the given parent down to the given component or
+     *         <code>null</code> if the component is not below the parent.
+     */
+    private static List<Component> getPath(JComponent parent, Component component)
+    {
+        final List<Component> l_path = new ArrayList<Component>();
+        for (Component c = component; c != null; c = c.getParent())
+        {
+            if (c == parent)
+            {
+                Collections.reverse(l_path);
+                return l_path;
+            }
+            l_path.add(c);
+        }
+
+        return null;
+    }
+
+    /**
+     * Compare two paths according to the search order of {@link GcComponentSwing}: the direct children of a container
+     * are checked in order before the search continues with the children of the first child.
+     */
+    private static int compareSearchOrder(List<Component> path1, List<Component> path2)
+    {
+        int i = 0;
+        while (i < path1.size() && i < path2.size() && path1.get(i) == path2.get(i))
+        {
+            i++;
+        }
+
+        if (i == path1.size() || i == path2.size())
+        {
+            // One component is the ancestor of the other one
+            return path1.size() - path2.size();
+        }
+
+        final boolean l_direct1 = i == path1.size() - 1;
+        final boolean l_direct2 = i == path2.size() - 1;
+        if (l_direct1 != l_direct2)
+        {
+            return l_direct1 ? -1 : 1;
+        }
+
+        final Container l_container = path1.get(i).getParent();
+        return l_container.getComponentZOrder(path1.get(i)) - l_container.getComponentZOrder(path2.get(i));
+    }
+
+    private void addTree(Component component)
+    {
+        if (!(component instanceof Container) || !m_containers.add((Container)component))
+        {
+            return;
+        }
+
+        final Container l_container = (Container)component;
+        if (l_container instanceof JComponent)
+        {
+            final JComponent l_component = (JComponent)l_container;
+            m_names.put(l_component, l_component.getName());
+            put(m_byName, l_component.getName(), l_component);
+            put(m_byClass, l_component.getClass(), l_component);
+            l_component.addPropertyChangeListener("name", m_nameListener);
+        }
+
+        l_container.addContainerListener(m_containerListener);
+
+        for (Component l_child : l_container.getComponents())
+        {
+            addTree(l_child);
+        }
+    }
+
+    private void removeTree(Component component)
+    {
+        if (!(component instanceof Container) || !m_containers.remove(component))
+        {
+            return;
+        }
+
+        final Container l_container = (Container)component;
+        if (l_container instanceof JComponent)
+        {
+            final JComponent l_component = (JComponent)l_container;
+            remove(m_byName, m_names.remove(l_component), l_component);
+            remove(m_byClass, l_component.getClass(), l_component);
+            l_component.removePropertyChangeListener("name", m_nameListener);
+        }
+
+        l_container.removeContainerListener(m_containerListener);
+
+        for (Component l_child : l_container.getComponents())
+        {
+            removeTree(l_child);
+        }
+    }
+
+    private static <K> void put(Map<K, Set<JComponent>> map, K key, JComponent component)
+    {
+        Set<JComponent> l_set = map.get(key);
+        if (l_set == null)
+        {
+            l_set = new HashSet<JComponent>(2);
+            map.put(key, l_set);
+        }
+        l_set.add(component);
+    }
+
+    private static <K> void remove(Map<K, Set<JComponent>> map, K key, JComponent component)
+    {
+        final Set<JComponent> l_set = map.get(key);
+        if (l_set != null && l_set.remove(component) && l_set.isEmpty())
+        {
+            map.remove(key);
+        }
+    }
+}
@@ -2,15 +2,13 @@
 package de.sick.guicheck.swing;
 
 import java.awt.Component;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.awt.Container;
 
 import javax.swing.JComponent;
 
 import de.sick.guicheck.GcAssertException;
-import de.sick.guicheck.GcException;
+import de.sick.guicheck.GcTextMatcher;
 import de.sick.guicheck.GcUtils;
-import de.sick.guicheck.fx.GcUtilsFX;
 
 /**
  * @author linggol (created)
@@ -30,12 +28,13 @@ abstract class GcComponentSwing<T extends GcComponentSwing<T>>
 
     private JComponent findComponent(final String name)
     {
+        final GcTextMatcher l_matcher = GcTextMatcher.of(name);
         return GcUtilsSwing.eval(new GcUtils.IEvaluator<JComponent>()
         {
             @Override
             public JComponent eval()
             {
-                JComponent l_found = findComponent(getComponent(), name);
+                JComponent l_found = findComponent(getComponent(), l_matcher);
                 if (l_found != null)
                 {
                     return l_found;
@@ -48,12 +47,13 @@ abstract class GcComponentSwing<T extends GcComponentSwing<T>>
 
     private JComponent findComponent(final String name, int evalRetries, int evalDelay)
     {
+        final GcTextMatcher l_matcher = GcTextMatcher.of(name);
         return GcUtilsSwing.eval(new GcUtils.IEvaluator<JComponent>()
         {
             @Override
             public JComponent eval()
             {
-                JComponent l_found = findComponent(getComponent(), name);
+                JComponent l_found = findComponent(getComponent(), l_matcher);
                 if (l_found != null)
                 {
                     return l_found;
@@ -83,6 +83,18 @@ abstract class GcComponentSwing<T extends GcComponentSwing<T>>
     }
 
     private JComponent findComponent(JComponent parent, Class<?> clazz)
+    {
+        final GcComponentIndexSwing l_index = GcComponentIndexSwing.getIndex(parent);
+        return l_index == null ? scanComponent(parent, clazz) : l_index.findByClass(parent, clazz);
+    }
+
+    private JComponent findComponent(JComponent parent, GcTextMatcher name)
+    {
+        final GcComponentIndexSwing l_index = GcComponentIndexSwing.getIndex(parent);
+        return l_index == null ? scanComponent(parent, name) : l_index.findByName(parent, name);
+    }
+
+    private JComponent scanComponent(Container parent, Class<?> clazz)
     {
         for (Component c : parent.getComponents())
         {
@@ -97,9 +109,9 @@ abstract class GcComponentSwing<T extends GcComponentSwing<T>>
 
         for (Component c : parent.getComponents())
         {
-            if (c instanceof JComponent)
+            if (c instanceof Container)
             {
-                JComponent l_found = findComponent((JComponent)c, clazz);
+                JComponent l_found = scanComponent((Container)c, clazz);
                 if (l_found != null)
                 {
                     return l_found;
@@ -110,13 +122,13 @@ abstract class GcComponentSwing<T extends GcComponentSwing<T>>
         return null;
     }
 
-    private JComponent findComponent(JComponent parent, String name)
+    private JComponent scanComponent(Container parent, GcTextMatcher name)
     {
         for (Component c : parent.getComponents())
         {
             if (c instanceof JComponent)
             {
-                if (GcUtils.startsWithOrMatches(c.getName(), name))
+                if (name.matches(c.getName()))
                 {
                     return (JComponent)c;
                 }
@@ -125,9 +137,9 @@ abstract class GcComponentSwing<T extends GcComponentSwing<T>>
 
         for (Component c : parent.getComponents())
         {
-            if (c instanceof JComponent)
+            if (c instanceof Container)
             {
-                JComponent l_found = findComponent((JComponent)c, name);
+                JComponent l_found = scanComponent((Container)c, name);
                 if (l_found != null)
                 {
                     return l_found;
@@ -165,46 +177,10 @@ abstract class GcComponentSwing<T extends GcComponentSwing<T>>
     @SuppressWarnings("unchecked")
     final <TT> T propertyIs(final Object obj, final String property, final TT value, final boolean expectedResult)
     {
-        try
-        {
-            // Get the property getter method ...
-            final Class<?> l_clazz = value == null ? null : value.getClass();
-            final Method l_method = obj.getClass().getMethod(GcUtils.getPropertyGetter(property, l_clazz), (Class<?>[])null);
-
-            GcUtilsFX.eval(new GcUtils.IEvaluator<Void>()
-            {
-                @Override
-                public Void eval()
-                {
-                    TT l_value;
-                    try
-                    {
-                        // ... get the value of the property ...
-                        l_value = (TT)l_method.invoke(obj, (Object[])null);
-                    }
-                    catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e)
-                    {
-                        throw new GcException("Failed to access property " + property, e);
-                    }
-
-                    // ... and check it against the expected value
-                    if ((value == l_value || (value != null && value.equals(l_value))) != expectedResult)
-                    {
-                        final StringBuilder l_sb = new StringBuilder("Unexpected value of ");
-                        l_sb.append(property).append(": ").append(expectedResult ? "Expected: " : "Not expected: ").append(value).append(", Actual: ").append(l_value);
-                        throw new GcAssertException(l_sb.toString());
-                    }
-                    return null;
-                }
-            });
+        GcPropertyWaitSwing.propertyIs(obj, property, value, expectedResult);
 
-            // Return this instance again according to the fluent API style
-            return (T)this;
-        }
-        catch (NoSuchMethodException e)
-        {
-            throw new GcException("Failed to access property " + property, e);
-        }
+        // Return this instance again according to the fluent API style
+        return (T)this;
     }
 
     /**
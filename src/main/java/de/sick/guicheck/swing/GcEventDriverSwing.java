@@ -0,0 +1,299 @@
+// Copyright 2014 SICK AG. All rights reserved.
+package de.sick.guicheck.swing;
+
+import java.awt.AWTEvent;
+import java.awt.Component;
+import java.awt.EventQueue;
+import java.awt.KeyboardFocusManager;
+import java.awt.Point;
+import java.awt.Toolkit;
+import java.awt.Window;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+
+import javax.swing.SwingUtilities;
+
+import de.sick.guicheck.GcException;
+
+/**
+ * Drives the input by posting synthetic events to the {@link EventQueue}. The real pointer does not move and for mouse
+ * input the window under test does not need to be on top or focused, which makes it suitable for a virtual display.
+ * <p>
+ * Mouse events are posted to the window under the pointer in window coordinates, so AWT dispatches them to the deepest
+ * component and generates the enter and exit events of the components like for native events. Key events are posted to
+ * the focus owner and are only delivered while its window is focused, so keyboard input still needs the focus. The
+ * driver keeps the state of the modifier keys, the mouse buttons and the click count.
+ *
+ * @author agent (created)
+ */
+final class GcEventDriverSwing implements GcInputDriverSwing
+{
+    private static final int BUTTON1 = InputEvent.BUTTON1_MASK | InputEvent.BUTTON1_DOWN_MASK;
+    private static final int BUTTON2 = InputEvent.BUTTON2_MASK | InputEvent.BUTTON2_DOWN_MASK;
+    private static final int BUTTON3 = InputEvent.BUTTON3_MASK | InputEvent.BUTTON3_DOWN_MASK;
+
+    private static final int WHEEL_SCROLL_AMOUNT = 3;
+    private static final boolean POPUP_ON_RELEASE = System.getProperty("os.name", "").startsWith("Windows");
+
+    private final Window m_window;
+
+    private final Point m_pointer = new Point();
+    private Window m_pointerWindow;
+    private int m_modifiers;
+
+    private int m_clickButton = MouseEvent.NOBUTTON;
+    private int m_clickCount;
+    private long m_clickTime;
+    private final Point m_clickPoint = new Point();
+
+    GcEventDriverSwing(Window window)
+    {
+        m_window = window;
+        if (window.isShowing())
+        {
+            final Point l_location = window.getLocationOnScreen();
+            m_pointer.setLocation(l_location.x + window.getWidth() / 2, l_location.y + window.getHeight() / 2);
+        }
+    }
+
+    @Override
+    public void keyPress(int code)
+    {
+        m_modifiers |= getModifier(code);
+        final char l_char = getChar(code);
+        postKeyEvent(KeyEvent.KEY_PRESSED, code, l_char);
+        if (l_char != KeyEvent.CHAR_UNDEFINED && (m_modifiers & (InputEvent.CTRL_DOWN_MASK | InputEvent.ALT_DOWN_MASK | InputEvent.META_DOWN_MASK)) == 0)
+        {
+            postKeyEvent(KeyEvent.KEY_TYPED, KeyEvent.VK_UNDEFINED, l_char);
+        }
+    }
+
+    @Override
+    public void keyRelease(int code)
+    {
+        postKeyEvent(KeyEvent.KEY_RELEASED, code, getChar(code));
+        m_modifiers &= ~getModifier(code);
+    }
+
+    @Override
+    public void keyType(char c)
+    {
+        final int l_code = KeyEvent.getExtendedKeyCodeForChar(c);
+        final int l_shift = Character.isUpperCase(c) ? InputEvent.SHIFT_DOWN_MASK & ~m_modifiers : 0;
+
+        m_modifiers |= l_shift;
+        if (l_code != KeyEvent.VK_UNDEFINED)
+        {
+            postKeyEvent(KeyEvent.KEY_PRESSED, l_code, c);
+        }
+        postKeyEvent(KeyEvent.KEY_TYPED, KeyEvent.VK_UNDEFINED, c);
+        if (l_code != KeyEvent.VK_UNDEFINED)
+        {
+            postKeyEvent(KeyEvent.KEY_RELEASED, l_code, c);
+        }
+        m_modifiers &= ~l_shift;
+    }
+
+    @Override
+    public void mouseMove(int x, int y)
+    {
+        m_pointer.setLocation(x, y);
+        final boolean l_dragging = (m_modifiers & (InputEvent.BUTTON1_DOWN_MASK | InputEvent.BUTTON2_DOWN_MASK | InputEvent.BUTTON3_DOWN_MASK)) != 0;
+
+        // While dragging AWT keeps sending the events to the window of the press
+        if (!l_dragging)
+        {
+            final Window l_window = getWindowAt(x, y);
+            if (m_pointerWindow != null && m_pointerWindow != l_window)
+            {
+                postMouseEvent(m_pointerWindow, MouseEvent.MOUSE_EXITED, 0, false, MouseEvent.NOBUTTON);
+            }
+            m_pointerWindow = l_window;
+        }
+
+        postMouseEvent(getPointerWindow(), l_dragging ? MouseEvent.MOUSE_DRAGGED : MouseEvent.MOUSE_MOVED, 0, false, MouseEvent.NOBUTTON);
+    }
+
+    @Override
+    public void mousePress(int buttons)
+    {
+        final int l_button = getButton(buttons);
+        final long l_now = System.currentTimeMillis();
+
+        if (l_button == m_clickButton && l_now - m_clickTime <= getMultiClickInterval() && m_clickPoint.equals(m_pointer))
+        {
+            m_clickCount++;
+        }
+        else
+        {
+            m_clickCount = 1;
+        }
+        m_clickButton = l_button;
+        m_clickTime = l_now;
+        m_clickPoint.setLocation(m_pointer);
+
+        m_modifiers |= InputEvent.getMaskForButton(l_button);
+        postMouseEvent(getPointerWindow(), MouseEvent.MOUSE_PRESSED, m_clickCount, l_button == MouseEvent.BUTTON3 && !POPUP_ON_RELEASE, l_button);
+    }
+
+    @Override
+    public void mouseRelease(int buttons)
+    {
+        final int l_button = getButton(buttons);
+        final Window l_window = getPointerWindow();
+
+        m_modifiers &= ~InputEvent.getMaskForButton(l_button);
+        postMouseEvent(l_window, MouseEvent.MOUSE_RELEASED, m_clickCount, l_button == MouseEvent.BUTTON3 && POPUP_ON_RELEASE, l_button);
+        if (l_button == m_clickButton && m_clickPoint.equals(m_pointer))
+        {
+            postMouseEvent(l_window, MouseEvent.MOUSE_CLICKED, m_clickCount, false, l_button);
+        }
+    }
+
+    @Override
+    public void mouseWheel(int wheelAmt)
+    {
+        final Window l_window = getPointerWindow();
+        final Point l_point = toWindow(l_window);
+        post(new MouseWheelEvent(l_window, MouseEvent.MOUSE_WHEEL, System.currentTimeMillis(), m_modifiers, l_point.x, l_point.y, m_pointer.x, m_pointer.y, 0, false, MouseWheelEvent.WHEEL_UNIT_SCROLL, WHEEL_SCROLL_AMOUNT, wheelAmt));
+    }
+
+    /**
+     * @throws GcException Thrown if there is no focus owner, the key event would be lost silently.
+     */
+    private void postKeyEvent(int id, int code, char c)
+    {
+        final Component l_comp = KeyboardFocusManager.getCurrentKeyboardFocusManager().getFocusOwner();
+        if (l_comp == null)
+        {
+            throw new GcException("Cannot post key event, no component has the focus");
+        }
+        post(new KeyEvent(l_comp, id, System.currentTimeMillis(), m_modifiers, code, c));
+    }
+
+    private void postMouseEvent(Window window, int id, int clickCount, boolean popupTrigger, int button)
+    {
+        final Point l_point = toWindow(window);
+        post(new MouseEvent(window, id, System.currentTimeMillis(), m_modifiers, l_point.x, l_point.y, m_pointer.x, m_pointer.y, clickCount, popupTrigger, button));
+    }
+
+    private Point toWindow(Window window)
+    {
+        final Point l_point = new Point(m_pointer);
+        SwingUtilities.convertPointFromScreen(l_point, window);
+        return l_point;
+    }
+
+    private Window getPointerWindow()
+    {
+        return m_pointerWindow != null ? m_pointerWindow : m_window;
+    }
+
+    /**
+     * The showing window containing the given point on the screen. If windows overlap, an owned window like a popup or
+     * a dialog wins over its owner. Falls back to the window of this driver.
+     */
+    private Window getWindowAt(int x, int y)
+    {
+        Window l_found = null;
+        for (Window l_window : Window.getWindows())
+        {
+            if (l_window.isShowing() && l_window.getBounds().contains(x, y) && (l_found == null || isOwnedBy(l_window, l_found)))
+            {
+                l_found = l_window;
+            }
+        }
+        return l_found != null ? l_found : m_window;
+    }
+
+    private static boolean isOwnedBy(Window window, Window owner)
+    {
+        for (Window l_owner = window.getOwner(); l_owner != null; l_owner = l_owner.getOwner())
+        {
+            if (l_owner == owner)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void post(AWTEvent event)
+    {
+        Toolkit.getDefaultToolkit().getSystemEventQueue().postEvent(event);
+    }
+
+    private static int getButton(int buttons)
+    {
+        if ((buttons & BUTTON1) != 0)
+        {
+            return MouseEvent.BUTTON1;
+        }
+        if ((buttons & BUTTON2) != 0)
+        {
+            return MouseEvent.BUTTON2;
+        }
+        if ((buttons & BUTTON3) != 0)
+        {
+            return MouseEvent.BUTTON3;
+        }
+        throw new IllegalArgumentException("Invalid mouse buttons " + buttons);
+    }
+
+    private static int getModifier(int code)
+    {
+        switch (code)
+        {
+            case KeyEvent.VK_SHIFT:
+                return InputEvent.SHIFT_DOWN_MASK;
+            case KeyEvent.VK_CONTROL:
+                return InputEvent.CTRL_DOWN_MASK;
+            case KeyEvent.VK_ALT:
+                return InputEvent.ALT_DOWN_MASK;
+            case KeyEvent.VK_ALT_GRAPH:
+                return InputEvent.ALT_GRAPH_DOWN_MASK;
+            case KeyEvent.VK_META:
+                return InputEvent.META_DOWN_MASK;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * The character a key produces on a plain keyboard, {@link KeyEvent#CHAR_UNDEFINED} for keys which do not type.
+     */
+    private char getChar(int code)
+    {
+        final boolean l_shift = (m_modifiers & InputEvent.SHIFT_DOWN_MASK) != 0;
+        if (code >= KeyEvent.VK_A && code <= KeyEvent.VK_Z)
+        {
+            return (char)(l_shift ? code : Character.toLowerCase(code));
+        }
+        if (code >= KeyEvent.VK_0 && code <= KeyEvent.VK_9 && !l_shift)
+        {
+            return (char)code;
+        }
+
+        switch (code)
+        {
+            case KeyEvent.VK_SPACE:
+                return ' ';
+            case KeyEvent.VK_ENTER:
+                return '\n';
+            case KeyEvent.VK_TAB:
+                return '\t';
+            case KeyEvent.VK_BACK_SPACE:
+                return '\b';
+            default:
+                return KeyEvent.CHAR_UNDEFINED;
+        }
+    }
+
+    private static long getMultiClickInterval()
+    {
+        final Object l_interval = Toolkit.getDefaultToolkit().getDesktopProperty("awt.multiClickInterval");
+        return l_interval instanceof Integer ? (Integer)l_interval : 500;
+    }
+}
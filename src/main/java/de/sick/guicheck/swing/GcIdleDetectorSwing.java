@@ -0,0 +1,103 @@
+// Copyright 2014 SICK AG. All rights reserved.
+package de.sick.guicheck.swing;
+
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import javax.swing.RepaintManager;
+
+/**
+ * Detects an idle EDT without sleeping. After each round trip through the EDT the detector peeks the system event
+ * queue. Idleness rests on this peek alone: the {@link RepaintManager} schedules the painting of dirty components as an
+ * event on the queue, thus an empty queue means that nothing is left to paint.
+ * <p>
+ * The EDT is idle after two consecutive clean round trips. The second one makes sure that events posted while the first
+ * one was processed are dispatched as well.
+ *
+ * @author agent (created)
+ */
+final class GcIdleDetectorSwing
+{
+    private static final int QUIET_ROUND_TRIPS = 2;
+
+    // Applications with running timers post events all the time, thus only do a limited number of round trips
+    private static final int MAX_ROUND_TRIPS = 20;
+
+    /**
+     * Private method of the AWT toolkit which flushes the native event queue. Events generated by a {@link
+     * java.awt.Robot} take a detour through the operating system and are not visible in the Java event queue before.
+     * The method is optional, if it does not exist only the Java event queue is checked.
+     */
+    private static final Method REAL_SYNC_METHOD = getRealSyncMethod();
+
+    private GcIdleDetectorSwing()
+    {
+        // Prevent instantiation
+    }
+
+    /**
+     * Wait until the event queue is empty, which includes the paint events of the {@link RepaintManager}.
+     */
+    static void waitForIdle()
+    {
+        flushNativeEvents();
+
+        int l_quiet = 0;
+        for (int i = 0; i < MAX_ROUND_TRIPS && l_quiet < QUIET_ROUND_TRIPS; i++)
+        {
+            final boolean[] l_busy = new boolean[1];
+            GcUtilsSwing.runLaterAndWait(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    l_busy[0] = hasPendingEvents();
+                }
+            });
+
+            l_quiet = l_busy[0] ? 0 : l_quiet + 1;
+        }
+    }
+
+    private static void flushNativeEvents()
+    {
+        final Toolkit l_toolkit = Toolkit.getDefaultToolkit();
+        if (REAL_SYNC_METHOD == null || !REAL_SYNC_METHOD.getDeclaringClass().isInstance(l_toolkit) || EventQueue.isDispatchThread())
+        {
+            return;
+        }
+
+        try
+        {
+            REAL_SYNC_METHOD.invoke(l_toolkit);
+        }
+        catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e)
+        {
+            // The toolkit gave up syncing, the round trips below still wait for the Java event queue
+        }
+    }
+
+    /**
+     * Must be called in the EDT.
+     */
+    private static boolean hasPendingEvents()
+    {
+        return Toolkit.getDefaultToolkit().getSystemEventQueue().peekEvent() != null;
+    }
+
+    private static Method getRealSyncMethod()
+    {
+        try
+        {
+            final Method l_method = Class.forName("sun.awt.SunToolkit").getDeclaredMethod("realSync");
+            l_method.setAccessible(true);
+            return l_method;
+        }
+        catch (ClassNotFoundException | NoSuchMethodException | RuntimeException e)
+        {
+            return null;
+        }
+    }
+}
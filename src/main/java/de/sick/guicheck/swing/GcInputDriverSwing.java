@@ -0,0 +1,38 @@
+// Copyright 2014 SICK AG. All rights reserved.
+package de.sick.guicheck.swing;
+
+/**
+ * Produces the input events of a {@link GcRobotSwing}. The methods mirror {@link java.awt.Robot}, they return as soon
+ * as the events are issued, waiting for the EDT is up to the caller.
+ *
+ * @see GcWindowSwing#useSyntheticInput(boolean)
+ * @author agent (created)
+ */
+interface GcInputDriverSwing
+{
+    void keyPress(int code);
+
+    void keyRelease(int code);
+
+    /**
+     * Type the given character. The component having the focus gets the resulting key events.
+     */
+    void keyType(char c);
+
+    /**
+     * Move the mouse to the given point on the screen.
+     */
+    void mouseMove(int x, int y);
+
+    /**
+     * @param buttons The button mask as used by {@link java.awt.Robot#mousePress(int)}.
+     */
+    void mousePress(int buttons);
+
+    /**
+     * @param buttons The button mask as used by {@link java.awt.Robot#mouseRelease(int)}.
+     */
+    void mouseRelease(int buttons);
+
+    void mouseWheel(int wheelAmt);
+}
@@ -0,0 +1,284 @@
+// Copyright 2013 SICK AG. All rights reserved.
+package de.sick.guicheck.swing;
+
+import java.awt.Component;
+import java.awt.KeyboardFocusManager;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.Document;
+import javax.swing.text.JTextComponent;
+
+import de.sick.guicheck.GcAssertException;
+import de.sick.guicheck.GcPropertyAccessor;
+import de.sick.guicheck.GcTimeBudget;
+import de.sick.guicheck.GcUtils;
+
+/**
+ * Waits for a property of a Swing component to reach or leave an expected value. The check is repeated in the EDT
+ * whenever the component fires a {@link PropertyChangeEvent} or, for text components, the document changes. As not all
+ * properties are bound, the check is also repeated after each evaluation delay until the evaluation timeout expires.
+ * <p>
+ * Objects which are no {@link Component} are polled via {@link GcUtilsSwing#eval(GcUtils.IEvaluator)}.
+ *
+ * @author agent (created)
+ */
+final class GcPropertyWaitSwing
+{
+    private GcPropertyWaitSwing()
+    {
+        // Prevent instantiation
+    }
+
+    /**
+     * Check if the given property of the given object has (or has not) the given value.
+     *
+     * @throws GcAssertException Thrown if the property does not reach the expected state within the evaluation timeout.
+     */
+    static <TT> void propertyIs(final Object obj, final String property, final TT value, final boolean expectedResult)
+    {
+        // Get the property getter ...
+        final MethodHandle l_getter = GcPropertyAccessor.getGetter(obj.getClass(), property, value == null ? null : value.getClass());
+
+        if (obj instanceof Component)
+        {
+            new Check(obj, property, value, expectedResult, l_getter).await((Component)obj);
+        }
+        else
+        {
+            GcUtilsSwing.eval(new GcUtils.IEvaluator<Void>()
+            {
+                @Override
+                public Void eval()
+                {
+                    // ... get the value of the property and check it against the expected value
+                    final String l_mismatch = GcUtils.checkPropertyValue(property, value, GcPropertyAccessor.invokeGetter(l_getter, obj, property), expectedResult);
+                    if (l_mismatch != null)
+                    {
+                        throw new GcAssertException(l_mismatch);
+                    }
+                    return null;
+                }
+            });
+        }
+    }
+
+    /**
+     * Request the focus for the given component and wait until the {@link KeyboardFocusManager} reports it or one of
+     * its children as focus owner. Editors like combo boxes and spinners pass the focus on to a child.
+     *
+     * @throws GcAssertException Thrown if the component does not get the focus within the evaluation timeout.
+     */
+    static void requestFocus(final Component component)
+    {
+        final CountDownLatch l_focused = new CountDownLatch(1);
+        final PropertyChangeListener l_listener = new PropertyChangeListener()
+        {
+            @Override
+            public void propertyChange(PropertyChangeEvent e)
+            {
+                if (isFocusOwner((Component)e.getNewValue(), component))
+                {
+                    l_focused.countDown();
+                }
+            }
+        };
+
+        final KeyboardFocusManager l_manager = KeyboardFocusManager.getCurrentKeyboardFocusManager();
+        l_manager.addPropertyChangeListener("focusOwner", l_listener);
+        try
+        {
+            GcUtilsSwing.runLaterAndWait(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    if (isFocusOwner(l_manager.getFocusOwner(), component))
+                    {
+                        l_focused.countDown();
+                    }
+                    else
+                    {
+                        component.requestFocus();
+                    }
+                }
+            });
+
+            if (!GcUtils.await(l_focused, GcUtilsSwing.EVALUATION_TIMEOUT))
+            {
+                final GcAssertException l_exception = new GcAssertException("Component did not get the focus: " + component.getName());
+                GcTimeBudget.check("waiting for the focus of " + component.getName(), l_exception);
+                throw l_exception;
+            }
+        }
+        finally
+        {
+            l_manager.removePropertyChangeListener("focusOwner", l_listener);
+        }
+    }
+
+    private static boolean isFocusOwner(Component owner, Component component)
+    {
+        return owner != null && SwingUtilities.isDescendingFrom(owner, component);
+    }
+
+    /**
+     * A single property check listening to the component. All checks are done in the EDT.
+     */
+    private static final class Check implements PropertyChangeListener, DocumentListener
+    {
+        private final Object m_obj;
+        private final String m_property;
+        private final Object m_value;
+        private final boolean m_expectedResult;
+        private final MethodHandle m_getter;
+        private final CountDownLatch m_matched = new CountDownLatch(1);
+
+        private Document m_document;
+        private String m_mismatch;
+        private RuntimeException m_failure;
+
+        Check(Object obj, String property, Object value, boolean expectedResult, MethodHandle getter)
+        {
+            m_obj = obj;
+            m_property = property;
+            m_value = value;
+            m_expectedResult = expectedResult;
+            m_getter = getter;
+        }
+
+        void await(final Component component)
+        {
+            final Runnable l_check = new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    check();
+                }
+            };
+
+            GcUtilsSwing.runLaterAndWait(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    component.addPropertyChangeListener(Check.this);
+                    setDocument(component instanceof JTextComponent ? ((JTextComponent)component).getDocument() : null);
+                    check();
+                }
+            });
+
+            try
+            {
+                final long l_deadline = GcTimeBudget.deadline(GcUtilsSwing.EVALUATION_TIMEOUT);
+                long l_remaining;
+                while ((l_remaining = TimeUnit.NANOSECONDS.toMillis(l_deadline - System.nanoTime())) > 0)
+                {
+                    if (GcUtils.await(m_matched, Math.min(l_remaining, GcUtilsSwing.EVALUATION_DELAY)))
+                    {
+                        break;
+                    }
+
+                    // Not all properties are bound, so check again
+                    GcUtilsSwing.runLaterAndWait(l_check);
+                }
+            }
+            finally
+            {
+                SwingUtilities.invokeLater(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        component.removePropertyChangeListener(Check.this);
+                        setDocument(null);
+                    }
+                });
+            }
+
+            synchronized (this)
+            {
+                if (m_failure != null)
+                {
+                    throw m_failure;
+                }
+                if (m_matched.getCount() > 0)
+                {
+                    final GcAssertException l_exception = new GcAssertException(m_mismatch);
+                    GcTimeBudget.check("waiting for property " + m_property, l_exception);
+                    throw l_exception;
+                }
+            }
+        }
+
+        private synchronized void check()
+        {
+            if (m_matched.getCount() == 0)
+            {
+                return;
+            }
+
+            try
+            {
+                m_mismatch = GcUtils.checkPropertyValue(m_property, m_value, GcPropertyAccessor.invokeGetter(m_getter, m_obj, m_property), m_expectedResult);
+                if (m_mismatch == null)
+                {
+                    m_matched.countDown();
+                }
+            }
+            catch (RuntimeException e)
+            {
+                m_failure = e;
+                m_matched.countDown();
+            }
+        }
+
+        private void setDocument(Document document)
+        {
+            if (m_document != null)
+            {
+                m_document.removeDocumentListener(this);
+            }
+            m_document = document;
+            if (m_document != null)
+            {
+                m_document.addDocumentListener(this);
+            }
+        }
+
+        @Override
+        public void propertyChange(PropertyChangeEvent e)
+        {
+            if ("document".equals(e.getPropertyName()))
+            {
+                setDocument((Document)e.getNewValue());
+            }
+            check();
+        }
+
+        @Override
+        public void insertUpdate(DocumentEvent e)
+        {
+            check();
+        }
+
+        @Override
+        public void removeUpdate(DocumentEvent e)
+        {
+            check();
+        }
+
+        @Override
+        public void changedUpdate(DocumentEvent e)
+        {
+            check();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+// Copyright 2014 SICK AG. All rights reserved.
+package de.sick.guicheck.swing;
+
+import java.awt.Component;
+import java.awt.KeyboardFocusManager;
+import java.awt.Robot;
+import java.awt.Toolkit;
+import java.awt.event.KeyEvent;
+
+/**
+ * Drives the input via a {@link Robot}, so the events pass the event pipeline of the operating system. The window under
+ * test has to be visible, unobscured and focused.
+ *
+ * @author agent (created)
+ */
+final class GcRobotDriverSwing implements GcInputDriverSwing
+{
+    private final Robot m_robot;
+
+    GcRobotDriverSwing(Robot robot)
+    {
+        m_robot = robot;
+    }
+
+    @Override
+    public void keyPress(int code)
+    {
+        m_robot.keyPress(code);
+    }
+
+    @Override
+    public void keyRelease(int code)
+    {
+        m_robot.keyRelease(code);
+    }
+
+    @Override
+    public void keyType(char c)
+    {
+        final boolean l_isUpperCase = Character.isUpperCase(c);
+        final int l_code = KeyEvent.getExtendedKeyCodeForChar(c);
+
+        if (l_code != KeyEvent.VK_UNDEFINED)
+        {
+            try
+            {
+                // Native events take a detour through the operating system, wait for each of them
+                if (l_isUpperCase)
+                {
+                    m_robot.keyPress(KeyEvent.VK_SHIFT);
+                    GcUtilsSwing.waitForIdle();
+                }
+                m_robot.keyPress(l_code);
+                GcUtilsSwing.waitForIdle();
+                m_robot.keyRelease(l_code);
+                GcUtilsSwing.waitForIdle();
+                if (l_isUpperCase)
+                {
+                    m_robot.keyRelease(KeyEvent.VK_SHIFT);
+                    GcUtilsSwing.waitForIdle();
+                }
+                return;
+            }
+            catch (IllegalArgumentException e)
+            {
+                // The key code isn't known
+                // We create a custom event for this character
+            }
+        }
+
+        // We didn't get a valid key code for the character, so create a custom KEY_TYPED event
+        // Forget the key event if there is no focus owner at the moment
+        final Component l_comp = KeyboardFocusManager.getCurrentKeyboardFocusManager().getFocusOwner();
+        if (l_comp != null)
+        {
+            Toolkit.getDefaultToolkit().getSystemEventQueue().postEvent(new KeyEvent(l_comp, KeyEvent.KEY_TYPED, System.currentTimeMillis(), 0, KeyEvent.VK_UNDEFINED, c));
+        }
+    }
+
+    @Override
+    public void mouseMove(int x, int y)
+    {
+        m_robot.mouseMove(x, y);
+    }
+
+    @Override
+    public void mousePress(int buttons)
+    {
+        m_robot.mousePress(buttons);
+    }
+
+    @Override
+    public void mouseRelease(int buttons)
+    {
+        m_robot.mouseRelease(buttons);
+    }
+
+    @Override
+    public void mouseWheel(int wheelAmt)
+    {
+        m_robot.mouseWheel(wheelAmt);
+    }
+}
@@ -2,6 +2,7 @@
 package de.sick.guicheck.swing;
 
 import java.awt.Component;
+import java.awt.EventQueue;
 import java.awt.KeyboardFocusManager;
 import java.awt.Point;
 import java.awt.Rectangle;
@@ -12,30 +13,33 @@ import java.awt.event.KeyEvent;
 
 import javax.swing.JComponent;
 import javax.swing.SwingUtilities;
-
-import com.sun.javafx.robot.FXRobot;
-
-import de.sick.guicheck.fx.GcUtilsFX;
+import javax.swing.text.JTextComponent;
 
 /**
- * A JavaFX robot which automatically waits for the windowing thread to become idle. Input device methods like mouse or
- * keyboard actions are delegated to the {@link FXRobot} given in the constructor.
+ * A Swing robot which automatically waits for the EDT to become idle. Input device methods like mouse or keyboard
+ * actions are delegated to an input driver. By default this is the {@link Robot} given in the constructor, see
+ * {@link GcWindowSwing#useSyntheticInput(boolean)} for the alternative.
  * <p>
- * Every method which triggers an input action, like mouse or keyboard, checks if the platform is still alive, calls the
- * corresponding method of the robot and waits for the UI becoming idle.
+ * Every method which triggers an input action, like mouse or keyboard, calls the corresponding method of the driver and
+ * waits for the UI becoming idle.
  * 
- * @see FXRobot
+ * @see Robot
  * @author linggol (created)
  */
 public class GcRobotSwing
 {
-    private final Robot m_robot;
+    private volatile GcInputDriverSwing m_driver;
     private final GcWindowSwing m_window;
 
     GcRobotSwing(GcWindowSwing window, Robot robot)
     {
         m_window = window;
-        m_robot = robot;
+        m_driver = new GcRobotDriverSwing(robot);
+    }
+
+    void setDriver(GcInputDriverSwing driver)
+    {
+        m_driver = driver;
     }
 
     /**
@@ -43,7 +47,7 @@ public class GcRobotSwing
      */
     public GcRobotSwing keyPress(int code)
     {
-        m_robot.keyPress(code);
+        m_driver.keyPress(code);
         GcUtilsSwing.waitForIdle();
         return this;
     }
@@ -53,7 +57,7 @@ public class GcRobotSwing
      */
     public GcRobotSwing keyRelease(int code)
     {
-        m_robot.keyRelease(code);
+        m_driver.keyRelease(code);
         GcUtilsSwing.waitForIdle();
         return this;
     }
@@ -87,44 +91,51 @@ public class GcRobotSwing
     }
 
     /**
-     * Type the given character on the keyboard. The component having the focus will get the resulting {@link KeyEvent}
+     * Enter the given text into the focused {@link JTextComponent} as a burst of KEY_TYPED events with a single wait
+     * for the EDT at the end. The text component inserts the characters one by one like for real typing, so document
+     * listeners and filters see the same edits. Key presses and releases are only generated for line breaks and tabs.
+     * <p>
+     * Falls back to {@link #keyType(String)} if the focus owner is no text component.
      */
-    public GcRobotSwing keyType(char c)
+    public GcRobotSwing typeText(String s)
     {
-        boolean l_isUpperCase = Character.isUpperCase(c);
-        int l_code = KeyEvent.getExtendedKeyCodeForChar(c);
+        final Component l_comp = KeyboardFocusManager.getCurrentKeyboardFocusManager().getFocusOwner();
+        if (!(l_comp instanceof JTextComponent))
+        {
+            return keyType(s);
+        }
 
-        if (l_code != KeyEvent.VK_UNDEFINED)
+        final EventQueue l_queue = Toolkit.getDefaultToolkit().getSystemEventQueue();
+        final long l_when = System.currentTimeMillis();
+        for (char c : s.toCharArray())
         {
-            try
+            // Line breaks and tabs are handled by key bindings of the pressed keys, not by the typed character
+            final int l_code = c == '\n' ? KeyEvent.VK_ENTER : c == '\t' ? KeyEvent.VK_TAB : KeyEvent.VK_UNDEFINED;
+            if (l_code != KeyEvent.VK_UNDEFINED)
             {
-                if (l_isUpperCase)
-                {
-                    keyPress(KeyEvent.VK_SHIFT);
-                }
-                keyPress(l_code);
-                keyRelease(l_code);
-                if (l_isUpperCase)
-                {
-                    keyRelease(KeyEvent.VK_SHIFT);
-                }
-                return this;
+                l_queue.postEvent(new KeyEvent(l_comp, KeyEvent.KEY_PRESSED, l_when, 0, l_code, c));
             }
-            catch (IllegalArgumentException e)
+            l_queue.postEvent(new KeyEvent(l_comp, KeyEvent.KEY_TYPED, l_when, 0, KeyEvent.VK_UNDEFINED, c));
+            if (l_code != KeyEvent.VK_UNDEFINED)
             {
-                // The key code isn't known
-                // We create a custom event for this character
+                l_queue.postEvent(new KeyEvent(l_comp, KeyEvent.KEY_RELEASED, l_when, 0, l_code, c));
             }
         }
 
-        // We didn't get a valid key code for the character, so create a custom KEY_TYPED event
-        // Forget the key event if there is no focus owner at the moment
-        final Component l_comp = KeyboardFocusManager.getCurrentKeyboardFocusManager().getFocusOwner();
-        if (l_comp != null)
-        {
-            Toolkit.getDefaultToolkit().getSystemEventQueue().postEvent(new KeyEvent(l_comp, KeyEvent.KEY_TYPED, System.currentTimeMillis(), 0, KeyEvent.VK_UNDEFINED, c));
-        }
+        GcUtilsSwing.waitForIdle();
+        return this;
+    }
 
+    /**
+     * Type the given character on the keyboard. The component having the focus will get the resulting {@link KeyEvent}
+     * <p>
+     * With the {@link Robot} each key press and release is waited for. Synthetic events are dispatched in the order
+     * they are posted, so they are waited for once per character.
+     */
+    public GcRobotSwing keyType(char c)
+    {
+        m_driver.keyType(c);
+        GcUtilsSwing.waitForIdle();
         return this;
     }
 
@@ -133,8 +144,8 @@ public class GcRobotSwing
      */
     public GcRobotSwing mouseWheel(int wheelAmt)
     {
-        m_robot.mouseWheel(wheelAmt);
-        GcUtilsFX.waitForIdle();
+        m_driver.mouseWheel(wheelAmt);
+        GcUtilsSwing.waitForIdle();
         return this;
     }
 
@@ -176,8 +187,8 @@ public class GcRobotSwing
      */
     public GcRobotSwing mouseMove(int x, int y)
     {
-        m_robot.mouseMove(x, y);
-        GcUtilsFX.waitForIdle();
+        m_driver.mouseMove(x, y);
+        GcUtilsSwing.waitForIdle();
         return this;
     }
 
@@ -296,13 +307,13 @@ public class GcRobotSwing
 
     private void mousePress(int buttons)
     {
-        m_robot.mousePress(buttons);
+        m_driver.mousePress(buttons);
         GcUtilsSwing.waitForIdle();
     }
 
     private void mouseRelease(int buttons)
     {
-        m_robot.mouseRelease(buttons);
+        m_driver.mouseRelease(buttons);
         GcUtilsSwing.waitForIdle();
     }
 
@@ -317,20 +328,16 @@ public class GcRobotSwing
 
     /**
      * Set the focus to the given component. Setting the focus is done via an explicit call to
-     * {@link JComponent#requestFocus()} and not using any method of the {@link Robot}.
+     * {@link JComponent#requestFocus()} and not using any method of the {@link Robot}. This method returns as soon as
+     * the {@link KeyboardFocusManager} reports the component or one of its children as focus owner.
+     *
+     * @throws de.sick.guicheck.GcAssertException Thrown if the component does not get the focus within the evaluation
+     *         timeout.
      */
     public GcRobotSwing focus(final GcComponentSwing<?> component)
     {
-        GcUtilsSwing.runLaterAndWait(new Runnable()
-        {
-            @Override
-            public void run()
-            {
-                component.getComponent().requestFocus();
-            }
-        });
-
-        GcUtilsSwing.waitForIdle(10, 1);
+        GcPropertyWaitSwing.requestFocus(component.getComponent());
+        GcUtilsSwing.waitForIdle();
         return this;
     }
 }
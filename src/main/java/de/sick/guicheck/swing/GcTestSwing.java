@@ -0,0 +1,163 @@
+// Copyright 2014 SICK AG. All rights reserved.
+package de.sick.guicheck.swing;
+
+import java.awt.AWTEvent;
+import java.awt.Toolkit;
+import java.awt.event.AWTEventListener;
+import java.awt.event.WindowEvent;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import de.sick.guicheck.GcException;
+import de.sick.guicheck.GcTimeBudget;
+import de.sick.guicheck.GcUtils;
+
+/**
+ * Base class of all GUIcheck tests based on Swing.
+ *
+ * @author agent (created)
+ */
+public abstract class GcTestSwing
+{
+    private static final int FIRST_WINDOW_VISIBLE_TIMEOUT = 60000;
+    private static final int CHECK_INTERVAL = 500;
+
+    private static long ms_timeToFirstWindow = -1;
+
+    /**
+     * Starts the given main class with the given arguments using the classloader of the current thread. The method
+     * returns as soon as the application opened its first window.
+     */
+    protected static final void startApp(final String clazz, final String... args)
+    {
+        startApp(Thread.currentThread().getContextClassLoader(), clazz, args);
+    }
+
+    /**
+     * Starts the given main class with the given arguments using the given classloader. The method returns as soon as
+     * the application opened its first window.
+     *
+     * @throws GcException Thrown if the main method fails or no window is opened within 60 seconds.
+     */
+    protected static final void startApp(ClassLoader loader, final String clazz, final String... args)
+    {
+        final long l_start = System.nanoTime();
+        final CountDownLatch l_opened = new CountDownLatch(1);
+        final Throwable[] l_failure = new Throwable[1];
+
+        // The listener must be in place before the application opens its first window
+        final AWTEventListener l_listener = new AWTEventListener()
+        {
+            @Override
+            public void eventDispatched(AWTEvent event)
+            {
+                if (event.getID() == WindowEvent.WINDOW_OPENED)
+                {
+                    l_opened.countDown();
+                }
+            }
+        };
+        Toolkit.getDefaultToolkit().addAWTEventListener(l_listener, AWTEvent.WINDOW_EVENT_MASK);
+
+        Thread l_thread = new Thread("GUIcheck-Swing-Runner")
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    // Load the class and invoke the main method
+                    Class<?> l_clazz = Thread.currentThread().getContextClassLoader().loadClass(clazz);
+                    Method l_method = l_clazz.getMethod("main", String[].class);
+
+                    l_method.invoke(null, new Object[] {args});
+                }
+                catch (InvocationTargetException e)
+                {
+                    failed(e.getCause());
+                    throw new GcException("Failed to invoke main method", e);
+                }
+                catch (Exception e)
+                {
+                    failed(e);
+                    throw new GcException("Failed to invoke main method", e);
+                }
+            }
+
+            private void failed(Throwable failure)
+            {
+                synchronized (l_failure)
+                {
+                    l_failure[0] = failure;
+                }
+                l_opened.countDown();
+            }
+        };
+
+        l_thread.setContextClassLoader(loader);
+        l_thread.start();
+
+        try
+        {
+            final long l_deadline = l_start + TimeUnit.MILLISECONDS.toNanos(FIRST_WINDOW_VISIBLE_TIMEOUT);
+            while (!GcUtils.await(l_opened, CHECK_INTERVAL))
+            {
+                GcTimeBudget.check("waiting for the first window of " + clazz);
+                if (System.nanoTime() - l_deadline >= 0)
+                {
+                    throw new GcException("The application " + clazz + " did not open a window within " + FIRST_WINDOW_VISIBLE_TIMEOUT + " ms");
+                }
+            }
+        }
+        finally
+        {
+            Toolkit.getDefaultToolkit().removeAWTEventListener(l_listener);
+        }
+
+        synchronized (l_failure)
+        {
+            if (l_failure[0] != null)
+            {
+                throw new GcException("Failed to start the application " + clazz, l_failure[0]);
+            }
+        }
+
+        ms_timeToFirstWindow = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - l_start);
+        System.out.println("Application " + clazz + " started: first window after " + ms_timeToFirstWindow + " ms");
+
+        GcUtilsSwing.waitForIdle();
+    }
+
+    /**
+     * @return The time in milliseconds from the start of the last application until its first window was opened or -1
+     *         if no application was started yet.
+     */
+    protected static final long getTimeToFirstWindow()
+    {
+        return ms_timeToFirstWindow;
+    }
+
+    /**
+     * Return the window with the given title.
+     *
+     * @param titleRegEx <code>null</code> means the title is not set
+     * @see GcUtilsSwing#window(String)
+     */
+    public static final GcWindowSwing window(final String titleRegEx)
+    {
+        return GcUtilsSwing.window(titleRegEx);
+    }
+
+    /**
+     * Return the window with the given title.
+     *
+     * @param titleRegEx <code>null</code> means the title is not set
+     * @see GcUtilsSwing#window(String, int, int)
+     */
+    public static final GcWindowSwing window(final String titleRegEx, int evalRetries, int evalDelay)
+    {
+        return GcUtilsSwing.window(titleRegEx, evalRetries, evalDelay);
+    }
+}
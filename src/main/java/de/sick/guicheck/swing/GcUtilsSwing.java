@@ -1,19 +1,19 @@
 // Copyright 2013 SICK AG. All rights reserved.
 package de.sick.guicheck.swing;
 
-import java.awt.Dialog;
-import java.awt.Frame;
 import java.awt.Window;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
 
 import javafx.application.Platform;
 
 import javax.swing.SwingUtilities;
 
 import de.sick.guicheck.GcAssertException;
+import de.sick.guicheck.GcTextMatcher;
+import de.sick.guicheck.GcTimeBudget;
 import de.sick.guicheck.GcUtils;
 import de.sick.guicheck.GcUtils.IEvaluator;
+import de.sick.guicheck.GcUtils.IdleMode;
 
 /**
  * General helpers for GUIcheck tests based on Swing.
@@ -22,19 +22,45 @@ import de.sick.guicheck.GcUtils.IEvaluator;
  */
 public final class GcUtilsSwing
 {
-    private static final int EVALUATION_RETRIES = 10;
-    private static final int EVALUATION_DELAY = 50;
+    /**
+     * The time in milliseconds a check may take to succeed.
+     */
+    static final int EVALUATION_TIMEOUT = 500;
+    static final int EVALUATION_DELAY = 50;
     private static final int IDLE_COUNT = 3;
     private static final int RUN_LATER_AND_WAIT_TIMEOUT = 500;
 
     // EasyMock needs a litte time for synchronisation between UI and mocked objects
     private static int ms_slowMotionFactor = 10;
 
+    private static IdleMode ms_idleMode = IdleMode.EVENT_DRIVEN;
+
+    private static final Runnable IDLE_WAIT = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            waitForIdle();
+        }
+    };
+
+    /**
+     * Set the sleep time in milliseconds after each idle round trip. Only used in {@link IdleMode#SLEEP}.
+     */
     public static void setSlowMotion(int factor)
     {
         ms_slowMotionFactor = factor;
     }
 
+    /**
+     * Set the strategy used by {@link #waitForIdle()}. The default is {@link IdleMode#EVENT_DRIVEN}. Switch to
+     * {@link IdleMode#SLEEP} if the application needs additional time for synchronisation, e.g. with mocked objects.
+     */
+    public static void setIdleMode(IdleMode mode)
+    {
+        ms_idleMode = mode;
+    }
+
     private GcUtilsSwing()
     {
         // Prevent instantiation
@@ -45,7 +71,14 @@ public final class GcUtilsSwing
      */
     public static void waitForIdle()
     {
-        waitForIdle(IDLE_COUNT, ms_slowMotionFactor);
+        if (ms_idleMode == IdleMode.EVENT_DRIVEN)
+        {
+            GcIdleDetectorSwing.waitForIdle();
+        }
+        else
+        {
+            waitForIdle(IDLE_COUNT, ms_slowMotionFactor);
+        }
     }
 
     /**
@@ -56,7 +89,7 @@ public final class GcUtilsSwing
         for (int i = 0; i < count; i++)
         {
             runLaterAndWait(GcUtils.NOOP_RUNNABLE);
-            GcUtils.sleepAndIgnoreInterrupts(sleep);
+            GcUtils.sleep(sleep);
         }
     }
 
@@ -75,18 +108,9 @@ public final class GcUtilsSwing
             }
         });
 
-        while (true)
+        while (!GcUtils.await(l_latch, RUN_LATER_AND_WAIT_TIMEOUT))
         {
-            try
-            {
-                if (l_latch.await(RUN_LATER_AND_WAIT_TIMEOUT, TimeUnit.MILLISECONDS))
-                {
-                    break;
-                }
-            }
-            catch (InterruptedException e)
-            {
-            }
+            GcTimeBudget.check("waiting for the EDT");
         }
     }
 
@@ -98,7 +122,7 @@ public final class GcUtilsSwing
     {
         while (Window.getWindows().length > 0)
         {
-            GcUtils.sleepAndIgnoreInterrupts(500);
+            GcUtils.sleep(500);
         }
 
         Platform.exit();
@@ -106,49 +130,56 @@ public final class GcUtilsSwing
     }
 
     /**
-     * Return the window with the given title.
+     * Return the window with the given title. If no such window is visible, this method waits for it to be shown.
      * 
      * @param titleRegEx <code>null</code> means the title is not set
+     * @see GcWindowRegistrySwing
      */
     public static final GcWindowSwing window(final String titleRegEx)
     {
-        return eval(new GcUtils.IEvaluator<GcWindowSwing>()
-        {
-            @Override
-            public GcWindowSwing eval()
-            {
-                final GcWindowSwing l_window = getWindowRaw(titleRegEx);
-                if (l_window == null)
-                {
-                    throw new GcAssertException("Cannot find window with title: " + titleRegEx);
-                }
-                return l_window;
-            }
-        });
+        return window(titleRegEx, EVALUATION_TIMEOUT);
     }
 
     /**
-     * Return the window with the given title.
+     * Return the window with the given title. If no such window is visible, this method looks for it again the given
+     * number of times.
      * 
      * @param titleRegEx <code>null</code> means the title is not set
+     * @param evalRetries The minimum number of tries, see {@link #eval(IEvaluator, int, int)}.
+     * @param evalDelay The initial delay in milliseconds between two tries.
+     * @see GcWindowRegistrySwing
      */
     public static final GcWindowSwing window(final String titleRegEx, int evalRetries, int evalDelay)
     {
-        return eval(new GcUtils.IEvaluator<GcWindowSwing>()
+        final GcTextMatcher l_title = GcTextMatcher.of(titleRegEx);
+        return eval(new IEvaluator<GcWindowSwing>()
         {
             @Override
             public GcWindowSwing eval()
             {
-                final GcWindowSwing l_window = getWindowRaw(titleRegEx);
+                final Window l_window = GcWindowRegistrySwing.find(l_title);
                 if (l_window == null)
                 {
                     throw new GcAssertException("Cannot find window with title: " + titleRegEx);
                 }
-                return l_window;
+                return GcWindowSwing.of(l_window);
             }
         }, evalRetries, evalDelay);
     }
 
+    private static GcWindowSwing window(final String titleRegEx, long timeout)
+    {
+        final Window l_window = GcWindowRegistrySwing.await(GcTextMatcher.of(titleRegEx), timeout);
+        if (l_window == null)
+        {
+            final GcAssertException l_exception = new GcAssertException("Cannot find window with title: " + titleRegEx);
+            GcTimeBudget.check("waiting for window " + titleRegEx, l_exception);
+            throw l_exception;
+        }
+
+        return GcWindowSwing.of(l_window);
+    }
+
     /**
      * Return the window with the given title. Use a more immediate mode without retries and timeouts. It also does not
      * throw any exception instead it returns <code>null</code> if the window is not found.
@@ -159,70 +190,31 @@ public final class GcUtilsSwing
      */
     public static final GcWindowSwing getWindowRaw(final String titleRegEx)
     {
-        for (Window l_window : Window.getWindows())
-        {
-            if (l_window instanceof Frame)
-            {
-                if (((Frame)l_window).isVisible() && GcUtils.startsWithOrMatches(((Frame)l_window).getTitle(), titleRegEx))
-                {
-                    return new GcWindowSwing(l_window);
-                }
-            }
-            else if (l_window instanceof Dialog)
-            {
-                if (((Dialog)l_window).isVisible() && GcUtils.startsWithOrMatches(((Dialog)l_window).getTitle(), titleRegEx))
-                {
-                    return new GcWindowSwing(l_window);
-                }
-            }
-        }
-
-        return null;
+        final Window l_window = GcWindowRegistrySwing.find(GcTextMatcher.of(titleRegEx));
+        return l_window == null ? null : GcWindowSwing.of(l_window);
     }
 
     /**
      * Evaluate the given evaluator with retries and timeouts. Retries are only done automatically if the evaluator
      * throws a {@link GcAssertException}. After each try this method waits for the EDT to become idle.
+     *
+     * @see GcUtils#eval(IEvaluator, long, long, Runnable)
      */
     public static <T> T eval(IEvaluator<T> e)
     {
-        for (int i = 0; i < EVALUATION_RETRIES - 1; i++)
-        {
-            try
-            {
-                return e.eval();
-            }
-            catch (GcAssertException ex)
-            {
-                GcUtils.sleepAndIgnoreInterrupts(EVALUATION_DELAY);
-                waitForIdle();
-            }
-        }
-
-        // The last time we try it without catching any exceptions
-        return e.eval();
+        return GcUtils.eval(e, EVALUATION_TIMEOUT, EVALUATION_DELAY, IDLE_WAIT);
     }
     
     /**
      * Evaluate the given evaluator with retries and timeouts. Retries are only done automatically if the evaluator
      * throws a {@link GcAssertException}. After each try this method waits for the EDT to become idle.
+     *
+     * @param evalRetries The minimum number of tries, together with the delay this gives the timeout of the evaluation.
+     * @param evalDelay The initial delay in milliseconds between two tries, 0 retries after the idle wait only.
+     * @see GcUtils#eval(IEvaluator, long, long, int, Runnable)
      */
     public static <T> T eval(IEvaluator<T> e, int evalRetries, int evalDelay)
     {
-        for (int i = 0; i < evalRetries - 1; i++)
-        {
-            try
-            {
-                return e.eval();
-            }
-            catch (GcAssertException ex)
-            {
-                GcUtils.sleepAndIgnoreInterrupts(evalDelay);
-                waitForIdle();
-            }
-        }
-        
-        // The last time we try it without catching any exceptions
-        return e.eval();
+        return GcUtils.eval(e, (long)evalRetries * evalDelay, evalDelay, evalRetries, IDLE_WAIT);
     }
 }
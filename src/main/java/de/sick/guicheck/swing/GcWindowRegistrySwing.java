@@ -0,0 +1,293 @@
+// Copyright 2014 SICK AG. All rights reserved.
+package de.sick.guicheck.swing;
+
+import java.awt.AWTEvent;
+import java.awt.Dialog;
+import java.awt.EventQueue;
+import java.awt.Frame;
+import java.awt.Toolkit;
+import java.awt.Window;
+import java.awt.event.AWTEventListener;
+import java.awt.event.ComponentEvent;
+import java.awt.event.WindowEvent;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import de.sick.guicheck.GcTextMatcher;
+import de.sick.guicheck.GcUtils;
+
+/**
+ * Registry of the visible frames and dialogs, indexed by title. A global {@link AWTEventListener} keeps the registry up
+ * to date when windows are opened, shown, hidden or closed, and a property change listener on each visible window
+ * tracks its title. Disposed windows which are not yet garbage collected are not part of the registry.
+ * <p>
+ * A lookup resolves immediately if a matching window is visible, otherwise it waits for the next matching window to be
+ * shown or renamed.
+ *
+ * @author agent (created)
+ */
+final class GcWindowRegistrySwing
+{
+    /**
+     * A thread waiting for a window with a matching title.
+     */
+    private static final class Waiter
+    {
+        private final GcTextMatcher m_title;
+        private final CountDownLatch m_found = new CountDownLatch(1);
+        private Window m_window;
+
+        Waiter(GcTextMatcher title)
+        {
+            m_title = title;
+        }
+    }
+
+    private static final Object ms_lock = new Object();
+
+    // Guarded by ms_lock, only modified in the EDT after the installation
+    private static final List<Window> ms_visible = new ArrayList<Window>();
+    private static final Map<String, List<Window>> ms_byTitle = new HashMap<String, List<Window>>();
+    private static final Map<Window, String> ms_titles = new HashMap<Window, String>();
+    private static final List<Waiter> ms_waiters = new ArrayList<Waiter>();
+    private static boolean ms_installed;
+
+    private static final PropertyChangeListener TITLE_LISTENER = new PropertyChangeListener()
+    {
+        @Override
+        public void propertyChange(PropertyChangeEvent e)
+        {
+            final Window l_window = (Window)e.getSource();
+            synchronized (ms_lock)
+            {
+                if (ms_titles.containsKey(l_window))
+                {
+                    unindex(l_window);
+                    index(l_window);
+                    notifyWaiters(l_window);
+                }
+            }
+        }
+    };
+
+    private static final AWTEventListener WINDOW_LISTENER = new AWTEventListener()
+    {
+        @Override
+        public void eventDispatched(AWTEvent event)
+        {
+            if (!(event.getSource() instanceof Frame || event.getSource() instanceof Dialog))
+            {
+                return;
+            }
+
+            final Window l_window = (Window)event.getSource();
+            switch (event.getID())
+            {
+                case WindowEvent.WINDOW_OPENED:
+                case ComponentEvent.COMPONENT_SHOWN:
+                    shown(l_window);
+                    break;
+                case WindowEvent.WINDOW_CLOSED:
+                case ComponentEvent.COMPONENT_HIDDEN:
+                    hidden(l_window);
+                    break;
+                default:
+                    break;
+            }
+        }
+    };
+
+    private GcWindowRegistrySwing()
+    {
+        // Prevent instantiation
+    }
+
+    /**
+     * @return The first visible window with a matching title or <code>null</code> if there is none.
+     */
+    static Window find(GcTextMatcher title)
+    {
+        install();
+        synchronized (ms_lock)
+        {
+            return findLocked(title);
+        }
+    }
+
+    /**
+     * Wait for a window with a matching title. Returns immediately if such a window is visible.
+     *
+     * @param timeout The time in milliseconds to wait at most.
+     * @return The window or <code>null</code> if no matching window was shown within the timeout.
+     */
+    static Window await(GcTextMatcher title, long timeout)
+    {
+        install();
+
+        final Waiter l_waiter = new Waiter(title);
+        synchronized (ms_lock)
+        {
+            final Window l_window = findLocked(title);
+            if (l_window != null)
+            {
+                return l_window;
+            }
+            ms_waiters.add(l_waiter);
+        }
+
+        try
+        {
+            GcUtils.await(l_waiter.m_found, timeout);
+        }
+        finally
+        {
+            synchronized (ms_lock)
+            {
+                ms_waiters.remove(l_waiter);
+            }
+        }
+
+        synchronized (ms_lock)
+        {
+            return l_waiter.m_window;
+        }
+    }
+
+    private static void install()
+    {
+        synchronized (ms_lock)
+        {
+            if (ms_installed)
+            {
+                return;
+            }
+            ms_installed = true;
+        }
+
+        // Register in the EDT, so no event gets lost between the listener registration and the initial scan
+        final Runnable l_install = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                Toolkit.getDefaultToolkit().addAWTEventListener(WINDOW_LISTENER, AWTEvent.WINDOW_EVENT_MASK | AWTEvent.COMPONENT_EVENT_MASK);
+                for (Window l_window : Window.getWindows())
+                {
+                    if (l_window.isVisible() && (l_window instanceof Frame || l_window instanceof Dialog))
+                    {
+                        shown(l_window);
+                    }
+                }
+            }
+        };
+
+        if (EventQueue.isDispatchThread())
+        {
+            l_install.run();
+        }
+        else
+        {
+            GcUtilsSwing.runLaterAndWait(l_install);
+        }
+    }
+
+    private static void shown(Window window)
+    {
+        synchronized (ms_lock)
+        {
+            if (ms_titles.containsKey(window))
+            {
+                return;
+            }
+
+            ms_visible.add(window);
+            index(window);
+            window.addPropertyChangeListener("title", TITLE_LISTENER);
+            notifyWaiters(window);
+        }
+    }
+
+    private static void hidden(Window window)
+    {
+        synchronized (ms_lock)
+        {
+            if (!ms_titles.containsKey(window))
+            {
+                return;
+            }
+
+            window.removePropertyChangeListener("title", TITLE_LISTENER);
+            unindex(window);
+            ms_visible.remove(window);
+        }
+
+        GcWindowSwing.evict(window);
+    }
+
+    private static Window findLocked(GcTextMatcher title)
+    {
+        // The number of different titles is small, the first shown window wins. A window hidden a moment ago is still
+        // registered until its hidden event is dispatched, so it is skipped here.
+        Window l_first = null;
+        for (Map.Entry<String, List<Window>> l_entry : ms_byTitle.entrySet())
+        {
+            if (title.matches(l_entry.getKey()))
+            {
+                for (Window l_window : l_entry.getValue())
+                {
+                    if (l_window.isShowing() && (l_first == null || ms_visible.indexOf(l_window) < ms_visible.indexOf(l_first)))
+                    {
+                        l_first = l_window;
+                    }
+                }
+            }
+        }
+        return l_first;
+    }
+
+    private static void notifyWaiters(Window window)
+    {
+        for (Waiter l_waiter : ms_waiters)
+        {
+            if (l_waiter.m_window == null && l_waiter.m_title.matches(getTitle(window)))
+            {
+                l_waiter.m_window = window;
+                l_waiter.m_found.countDown();
+            }
+        }
+    }
+
+    private static void index(Window window)
+    {
+        final String l_title = getTitle(window);
+        ms_titles.put(window, l_title);
+
+        List<Window> l_windows = ms_byTitle.get(l_title);
+        if (l_windows == null)
+        {
+            l_windows = new ArrayList<Window>(1);
+            ms_byTitle.put(l_title, l_windows);
+        }
+        l_windows.add(window);
+    }
+
+    private static void unindex(Window window)
+    {
+        final String l_title = ms_titles.remove(window);
+        final List<Window> l_windows = ms_byTitle.get(l_title);
+        if (l_windows != null && l_windows.remove(window) && l_windows.isEmpty())
+        {
+            ms_byTitle.remove(l_title);
+        }
+    }
+
+    private static String getTitle(Window window)
+    {
+        return window instanceof Frame ? ((Frame)window).getTitle() : ((Dialog)window).getTitle();
+    }
+}
@@ -5,12 +5,18 @@ import java.awt.AWTException;
 import java.awt.Component;
 import java.awt.Robot;
 import java.awt.Window;
+import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Future;
 
-import javax.imageio.ImageIO;
 import javax.swing.JComponent;
 
+import de.sick.guicheck.GcImageCompare;
+import de.sick.guicheck.GcSnapshotWriter;
+
 /**
  * A wrapper for windows used within GUIcheck.
  * 
@@ -18,6 +24,15 @@ import javax.swing.JComponent;
  */
 public class GcWindowSwing extends GcComponentSwing<GcWindowSwing>
 {
+    private static final Object ms_lock = new Object();
+
+    // Guarded by ms_lock. The wrappers reference their window, thus they are only weakly referenced as well. Hidden
+    // windows are evicted right away. The input driver selected for a window is kept separately, so it survives its
+    // wrapper.
+    private static final Map<Window, WeakReference<GcWindowSwing>> ms_wrappers = new WeakHashMap<Window, WeakReference<GcWindowSwing>>();
+    private static final Map<Window, Boolean> ms_syntheticInput = new WeakHashMap<Window, Boolean>();
+    private static Robot ms_awtRobot;
+
     private final Robot m_awtRobot;
     private final GcRobotSwing m_robot;
     private final Window m_window;
@@ -25,15 +40,70 @@ public class GcWindowSwing extends GcComponentSwing<GcWindowSwing>
     GcWindowSwing(Window window)
     {
         m_window = window;
-        
-        try
+        m_awtRobot = getSharedRobot();
+        m_robot = new GcRobotSwing(this, m_awtRobot);
+    }
+
+    /**
+     * Get the wrapper of the given window. The wrapper is shared as long as the window is visible and the wrapper is
+     * referenced somewhere.
+     */
+    static GcWindowSwing of(Window window)
+    {
+        synchronized (ms_lock)
         {
-            m_awtRobot = new Robot();
-            m_robot = new GcRobotSwing(this, m_awtRobot);
+            final WeakReference<GcWindowSwing> l_ref = ms_wrappers.get(window);
+            GcWindowSwing l_wrapper = l_ref == null ? null : l_ref.get();
+            if (l_wrapper == null)
+            {
+                l_wrapper = new GcWindowSwing(window);
+                if (Boolean.TRUE.equals(ms_syntheticInput.get(window)))
+                {
+                    l_wrapper.m_robot.setDriver(new GcEventDriverSwing(window));
+                }
+                ms_wrappers.put(window, new WeakReference<GcWindowSwing>(l_wrapper));
+
+                // The window may have been hidden and evicted concurrently
+                if (!window.isShowing())
+                {
+                    ms_wrappers.remove(window);
+                }
+            }
+            return l_wrapper;
         }
-        catch (AWTException e)
+    }
+
+    /**
+     * Forget the wrapper of a hidden or disposed window.
+     */
+    static void evict(Window window)
+    {
+        synchronized (ms_lock)
         {
-            throw new RuntimeException("Failed to create Swing robot");
+            ms_wrappers.remove(window);
+            ms_syntheticInput.remove(window);
+        }
+    }
+
+    /**
+     * The AWT robot is not bound to a window, all wrappers share one instance.
+     */
+    private static Robot getSharedRobot()
+    {
+        synchronized (ms_lock)
+        {
+            if (ms_awtRobot == null)
+            {
+                try
+                {
+                    ms_awtRobot = new Robot();
+                }
+                catch (AWTException e)
+                {
+                    throw new RuntimeException("Failed to create Swing robot");
+                }
+            }
+            return ms_awtRobot;
         }
     }
 
@@ -45,6 +115,24 @@ public class GcWindowSwing extends GcComponentSwing<GcWindowSwing>
         return m_robot;
     }
 
+    /**
+     * Select the input driver of the robot of this window. Synthetic input is posted directly to the event queue
+     * instead of moving the real pointer and pressing real keys via {@link Robot}. It does not need the window to be on
+     * top or focused and it is considerably faster, but it bypasses the native input handling of the operating system.
+     * The selection sticks to the window as long as it is visible.
+     *
+     * @param synthetic <code>true</code> for synthetic events, <code>false</code> for the {@link Robot}, the default.
+     */
+    public GcWindowSwing useSyntheticInput(boolean synthetic)
+    {
+        synchronized (ms_lock)
+        {
+            ms_syntheticInput.put(m_window, synthetic);
+        }
+        m_robot.setDriver(synthetic ? new GcEventDriverSwing(m_window) : new GcRobotDriverSwing(m_awtRobot));
+        return this;
+    }
+
     /**
      * Get the first child of the window.
      */
@@ -81,28 +169,49 @@ public class GcWindowSwing extends GcComponentSwing<GcWindowSwing>
     };
 
     /**
-     * Take a snapshot of the current window content and save it to a PNG file.
+     * Take a snapshot of the current window content and save it to a PNG file or the snapshot archive. The screen is
+     * captured in the EDT, the file is written in the background.
      * 
      * @param filename The name of the file without extension
+     * @return The future of the written file.
+     * @see GcSnapshotWriter
      */
-    public void takeWindowSnapshot(final String filename)
+    public Future<File> takeWindowSnapshot(final String filename)
     {
+        final BufferedImage[] l_image = new BufferedImage[1];
         GcUtilsSwing.runLaterAndWait(new Runnable()
         {
             @Override
             public void run()
             {
-                File l_file = new File(filename + ".png");
-                try
-                {
-                    ImageIO.write(m_awtRobot.createScreenCapture(m_window.getBounds()), "png", l_file);
-                    System.out.println("Snapshot saved to : " + l_file.getAbsolutePath());
-                }
-                catch (IOException e)
-                {
-                    e.printStackTrace();
-                }
+                l_image[0] = m_awtRobot.createScreenCapture(m_window.getBounds());
             }
         });
+
+        return GcSnapshotWriter.snapshot(l_image[0], new File(filename + ".png"));
+    }
+
+    /**
+     * Compare a screen capture of the window with the golden image. The screen is captured in the EDT, the comparison
+     * runs in the calling thread.
+     *
+     * @see GcImageCompare#assertMatches(File, int[], int, int)
+     */
+    public GcWindowSwing imageMatches(File golden, GcImageCompare compare)
+    {
+        final BufferedImage[] l_image = new BufferedImage[1];
+        GcUtilsSwing.runLaterAndWait(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                l_image[0] = m_awtRobot.createScreenCapture(m_window.getBounds());
+            }
+        });
+
+        final int l_width = l_image[0].getWidth();
+        final int l_height = l_image[0].getHeight();
+        compare.assertMatches(golden, l_image[0].getRGB(0, 0, l_width, l_height, null, 0, l_width), l_width, l_height);
+        return this;
     }
 }
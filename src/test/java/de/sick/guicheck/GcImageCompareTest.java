@@ -0,0 +1,153 @@
+// Copyright 2014 SICK AG. All rights reserved.
+package de.sick.guicheck;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent (created)
+ */
+public class GcImageCompareTest
+{
+    private static final int SIZE = 64;
+
+    @Test
+    public void identicalImagesMatch()
+    {
+        final int[] l_image = createImage(20);
+        final GcImageCompare.Result l_result = new GcImageCompare().compare(l_image, SIZE, l_image.clone(), SIZE);
+
+        Assert.assertTrue(l_result.matches());
+        Assert.assertEquals(0, l_result.getDifferingPixels());
+    }
+
+    @Test
+    public void channelToleranceAcceptsSmallDifferences()
+    {
+        final int[] l_expected = createImage(20);
+        final int[] l_actual = l_expected.clone();
+        l_actual[SIZE + 25] += 0x000300;
+
+        Assert.assertFalse(new GcImageCompare().compare(l_expected, SIZE, l_actual, SIZE).matches());
+        Assert.assertTrue(new GcImageCompare().channelTolerance(3).compare(l_expected, SIZE, l_actual, SIZE).matches());
+    }
+
+    @Test
+    public void ignoredRegionsAreSkipped()
+    {
+        final int[] l_expected = createImage(20);
+        final int[] l_actual = l_expected.clone();
+        Arrays.fill(l_actual, 0, SIZE * 4, 0xFFFF0000);
+
+        Assert.assertFalse(new GcImageCompare().compare(l_expected, SIZE, l_actual, SIZE).matches());
+        Assert.assertTrue(new GcImageCompare().ignore(0, 0, SIZE, 4).compare(l_expected, SIZE, l_actual, SIZE).matches());
+    }
+
+    @Test
+    public void antiAliasingAcceptsShiftedEdges()
+    {
+        final int[] l_expected = createImage(20);
+        final int[] l_actual = createImage(21);
+
+        Assert.assertFalse(new GcImageCompare().compare(l_expected, SIZE, l_actual, SIZE).matches());
+        Assert.assertTrue(new GcImageCompare().antiAliasing(true).compare(l_expected, SIZE, l_actual, SIZE).matches());
+    }
+
+    @Test
+    public void differentImagesAreRejectedByHashWhenExact()
+    {
+        final int[] l_expected = createImage(20);
+        final int[] l_actual = createStripes();
+
+        final GcImageCompare.Result l_result = new GcImageCompare().compare(l_expected, SIZE, l_actual, SIZE);
+        Assert.assertFalse(l_result.matches());
+        Assert.assertEquals(-1, l_result.getDifferingPixels());
+
+        // The hash must not reject images the pixel diff accepts
+        Assert.assertTrue(new GcImageCompare().maxDifferingPixels(SIZE * SIZE).compare(l_expected, SIZE, l_actual, SIZE).matches());
+    }
+
+    @Test
+    public void noiseWithinToleranceIsAccepted()
+    {
+        final Random l_random = new Random(42);
+        final int[] l_expected = new int[SIZE * SIZE];
+        final int[] l_actual = new int[SIZE * SIZE];
+        for (int i = 0; i < l_expected.length; i++)
+        {
+            final int l_gray = 0x80 + l_random.nextInt(5) - 2;
+            l_expected[i] = 0xFF808080;
+            l_actual[i] = 0xFF000000 | l_gray << 16 | l_gray << 8 | l_gray;
+        }
+
+        final GcImageCompare.Result l_result = new GcImageCompare().channelTolerance(8).compare(l_expected, SIZE, l_actual, SIZE);
+        Assert.assertTrue(l_result.matches());
+        Assert.assertEquals(0, l_result.getDifferingPixels());
+    }
+
+    @Test
+    public void goldenImageIsCreatedBeforeReturning() throws IOException
+    {
+        final File l_golden = File.createTempFile("guicheck", ".png");
+        final File l_actual = new File(l_golden.getPath().replaceFirst("\\.png$", "-actual.png"));
+        final File l_heatMap = new File(l_golden.getPath().replaceFirst("\\.png$", "-diff.png"));
+        l_golden.delete();
+        try
+        {
+            final int[] l_image = createImage(20);
+            new GcImageCompare().assertMatches(l_golden, l_image, SIZE, SIZE);
+            new GcImageCompare().assertMatches(l_golden, l_image, SIZE, SIZE);
+
+            try
+            {
+                new GcImageCompare().assertMatches(l_golden, createImage(30), SIZE, SIZE);
+                Assert.fail("Differing image accepted");
+            }
+            catch (GcAssertException e)
+            {
+                Assert.assertTrue(l_actual.isFile());
+                Assert.assertTrue(l_heatMap.isFile());
+            }
+        }
+        finally
+        {
+            l_golden.delete();
+            l_actual.delete();
+            l_heatMap.delete();
+        }
+    }
+
+    /**
+     * An image with black and white vertical stripes of 8 pixels.
+     */
+    private static int[] createStripes()
+    {
+        final int[] l_image = new int[SIZE * SIZE];
+        for (int i = 0; i < l_image.length; i++)
+        {
+            l_image[i] = (i % SIZE & 8) == 0 ? 0xFF000000 : 0xFFFFFFFF;
+        }
+        return l_image;
+    }
+
+    /**
+     * A white image with a black vertical bar starting at the given column.
+     */
+    private static int[] createImage(int barStart)
+    {
+        final int[] l_image = new int[SIZE * SIZE];
+        for (int y = 0; y < SIZE; y++)
+        {
+            for (int x = 0; x < SIZE; x++)
+            {
+                l_image[y * SIZE + x] = x >= barStart && x < barStart + 10 ? 0xFF000000 : 0xFFFFFFFF;
+            }
+        }
+        return l_image;
+    }
+}
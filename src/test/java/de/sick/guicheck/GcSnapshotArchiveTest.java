@@ -0,0 +1,125 @@
+// Copyright 2014 SICK AG. All rights reserved.
+package de.sick.guicheck;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent (created)
+ */
+public class GcSnapshotArchiveTest
+{
+    @Test
+    public void codecIsLossless()
+    {
+        final Random l_random = new Random(42);
+        final int[] l_pixels = new int[97 * 31];
+        for (int i = 0; i < l_pixels.length; i++)
+        {
+            // Mix runs, small differences, repeated colors and random colors with alpha
+            switch (l_random.nextInt(4))
+            {
+                case 0:
+                    l_pixels[i] = i > 0 ? l_pixels[i - 1] : 0xFF000000;
+                    break;
+                case 1:
+                    l_pixels[i] = i > 0 ? l_pixels[i - 1] + 0x010203 : 0xFFFFFFFF;
+                    break;
+                case 2:
+                    l_pixels[i] = i > 7 ? l_pixels[i - 7] : 0x80FF0000;
+                    break;
+                default:
+                    l_pixels[i] = l_random.nextInt();
+                    break;
+            }
+        }
+
+        final byte[] l_encoded = GcQoiCodec.encode(l_pixels, 97, 31);
+        Assert.assertArrayEquals(l_pixels, GcQoiCodec.decode(ByteBuffer.wrap(l_encoded)));
+    }
+
+    @Test
+    public void identicalImagesAreStoredOnce() throws IOException
+    {
+        final File l_file = File.createTempFile("guicheck", ".gcsa");
+        l_file.delete();
+        try
+        {
+            final int[] l_image = new int[40 * 30];
+            Arrays.fill(l_image, 0xFF336699);
+
+            try (GcSnapshotArchive l_archive = new GcSnapshotArchive(l_file))
+            {
+                l_archive.add("first.png", l_image, 40, 30);
+                l_archive.add("second.png", l_image, 40, 30);
+                Assert.assertEquals(1, l_archive.getImageCount());
+            }
+
+            // Reopen and append a different image
+            try (GcSnapshotArchive l_archive = new GcSnapshotArchive(l_file))
+            {
+                l_image[0] = 0xFF000000;
+                l_archive.add("third.png", l_image, 40, 30);
+
+                Assert.assertEquals(2, l_archive.getImageCount());
+                Assert.assertEquals(Arrays.asList("first.png", "second.png", "third.png"), l_archive.getNames());
+                Assert.assertArrayEquals(l_image, l_archive.read("third.png"));
+                Assert.assertEquals(0xFF336699, l_archive.read("second.png")[0]);
+            }
+        }
+        finally
+        {
+            l_file.delete();
+        }
+    }
+
+    @Test
+    public void concurrentlyAddedImagesAreStoredOnce() throws Exception
+    {
+        final File l_file = File.createTempFile("guicheck", ".gcsa");
+        l_file.delete();
+        final ExecutorService l_executor = Executors.newFixedThreadPool(4);
+        try (GcSnapshotArchive l_archive = new GcSnapshotArchive(l_file))
+        {
+            final int[] l_image = new int[200 * 100];
+            Arrays.fill(l_image, 0xFF336699);
+
+            final Future<?>[] l_futures = new Future<?>[16];
+            for (int i = 0; i < l_futures.length; i++)
+            {
+                final String l_name = "snapshot" + i + ".png";
+                l_futures[i] = l_executor.submit(new Callable<String>()
+                {
+                    @Override
+                    public String call() throws IOException
+                    {
+                        return l_archive.add(l_name, l_image, 200, 100);
+                    }
+                });
+            }
+            for (Future<?> l_future : l_futures)
+            {
+                l_future.get();
+            }
+
+            Assert.assertEquals(1, l_archive.getImageCount());
+            Assert.assertEquals(l_futures.length, l_archive.getNames().size());
+            Assert.assertArrayEquals(l_image, l_archive.read("snapshot7.png"));
+        }
+        finally
+        {
+            l_executor.shutdown();
+            l_file.delete();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+// Copyright 2013 SICK AG. All rights reserved.
+package de.sick.guicheck;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent (created)
+ */
+public class GcTextMatcherTest
+{
+    @Test
+    public void startsWithHasPriority()
+    {
+        // "GUI (" is no valid expression, but it is never compiled since startsWith already succeeds
+        Assert.assertTrue(GcTextMatcher.of("GUI (").matches("GUI (Check)"));
+        Assert.assertTrue(GcTextMatcher.of("GUI").matches("GUI Check FX 0.1"));
+    }
+
+    @Test
+    public void regularExpression()
+    {
+        final GcTextMatcher l_matcher = GcTextMatcher.of(".*Check FX \\d\\.\\d");
+        Assert.assertTrue(l_matcher.matches("GUI Check FX 0.1"));
+        Assert.assertFalse(l_matcher.matches("GUI Check Swing"));
+        Assert.assertTrue(GcUtils.startsWithOrMatches("GUI Check FX 0.1", ".*Check FX \\d\\.\\d"));
+    }
+
+    @Test
+    public void nullHandling()
+    {
+        Assert.assertTrue(GcTextMatcher.of(null).matches(null));
+        Assert.assertFalse(GcTextMatcher.of(null).matches("title"));
+        Assert.assertFalse(GcTextMatcher.of("title").matches(null));
+    }
+}
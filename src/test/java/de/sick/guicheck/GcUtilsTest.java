@@ -0,0 +1,143 @@
+// Copyright 2013 SICK AG. All rights reserved.
+package de.sick.guicheck;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent (created)
+ */
+public class GcUtilsTest
+{
+    @After
+    public void tearDown()
+    {
+        GcTimeBudget.clear();
+        Thread.interrupted();
+    }
+
+    @Test
+    public void evalRetriesUntilSuccess()
+    {
+        final int[] l_tries = new int[1];
+        final String l_result = GcUtils.eval(new GcUtils.IEvaluator<String>()
+        {
+            @Override
+            public String eval()
+            {
+                if (++l_tries[0] < 3)
+                {
+                    throw new GcAssertException("not yet");
+                }
+                return "done";
+            }
+        }, 5000, 1, GcUtils.NOOP_RUNNABLE);
+
+        Assert.assertEquals("done", l_result);
+        Assert.assertEquals(3, l_tries[0]);
+    }
+
+    @Test(expected = GcAssertException.class)
+    public void evalThrowsLastAssertAfterTimeout()
+    {
+        GcUtils.eval(new GcUtils.IEvaluator<Void>()
+        {
+            @Override
+            public Void eval()
+            {
+                throw new GcAssertException("never");
+            }
+        }, 50, 10, GcUtils.NOOP_RUNNABLE);
+    }
+
+    @Test
+    public void evalTriesAtLeastTheMinimumNumberOfTimes()
+    {
+        final int[] l_tries = new int[1];
+        try
+        {
+            GcUtils.eval(new GcUtils.IEvaluator<Void>()
+            {
+                @Override
+                public Void eval()
+                {
+                    l_tries[0]++;
+                    throw new GcAssertException("never");
+                }
+            }, 0, 0, 10, GcUtils.NOOP_RUNNABLE);
+            Assert.fail();
+        }
+        catch (GcAssertException e)
+        {
+            Assert.assertEquals(10, l_tries[0]);
+        }
+    }
+
+    @Test
+    public void evalStopsWhenBudgetIsExhausted()
+    {
+        GcTimeBudget.start(50);
+        final long l_start = System.currentTimeMillis();
+        try
+        {
+            GcUtils.eval(new GcUtils.IEvaluator<Void>()
+            {
+                @Override
+                public Void eval()
+                {
+                    throw new GcAssertException("never");
+                }
+            }, 60000, 10, GcUtils.NOOP_RUNNABLE);
+            Assert.fail();
+        }
+        catch (GcAssertException e)
+        {
+            Assert.fail("Budget not reported");
+        }
+        catch (GcException e)
+        {
+            Assert.assertTrue(e.getCause() instanceof GcAssertException);
+        }
+        Assert.assertTrue(System.currentTimeMillis() - l_start < 5000);
+    }
+
+    @Test
+    public void budgetIsScopedToTheThread() throws InterruptedException
+    {
+        GcTimeBudget.start(0);
+        final boolean[] l_exhausted = new boolean[2];
+        final Thread l_other = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                // Inherited from the starting thread until replaced
+                l_exhausted[0] = GcTimeBudget.isExhausted();
+                GcTimeBudget.start(60000);
+                l_exhausted[1] = GcTimeBudget.isExhausted();
+            }
+        };
+        l_other.start();
+        l_other.join();
+
+        Assert.assertTrue(l_exhausted[0]);
+        Assert.assertFalse(l_exhausted[1]);
+        Assert.assertTrue(GcTimeBudget.isExhausted());
+    }
+
+    @Test
+    public void sleepIsCancelledByInterrupt()
+    {
+        Thread.currentThread().interrupt();
+        try
+        {
+            GcUtils.sleep(60000);
+            Assert.fail();
+        }
+        catch (GcException e)
+        {
+            Assert.assertTrue(Thread.currentThread().isInterrupted());
+        }
+    }
+}
@@ -29,11 +29,15 @@ public class GUICheckFXTest extends GcTestFX
 
         l_stage.robot().mouseMoveToCenter("#button13").mouseClick();
         l_stage.node("#button8").propertyIs("text", "8");
+        l_stage.batch().propertyIs("title", "GUI Check FX 0.1").propertyIs("#button8", "text", "8").treeVisibleIs("#button8", true).run();
 
         l_stage.robot().focus("#text1");
         l_stage.node("#text1").propertyIs("focused", true);
         l_stage.robot().keyType("a");
         l_stage.node("#text1").propertyIs("text", "a");
+        // Non BMP characters are typed as a single KEY_TYPED event each
+        l_stage.robot().typeText("b\uD83D\uDE00c");
+        l_stage.node("#text1").propertyIs("text", "ab\uD83D\uDE00c");
 
         l_stage.robot().focus("#text2");
         l_stage.robot().keyType("Danke fr den Fisch");
@@ -1,9 +1,17 @@
 // Copyright 2014 SICK AG. All rights reserved.
 package de.sick.guicheck.swing;
 
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import javax.swing.JFrame;
 import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
@@ -27,12 +35,101 @@ public class GUICheckSwing
     
     @Test
     public void typeSpecialChars() throws Exception
+    {
+        typeSpecialChars(GcUtilsSwing.window("GUICheckSwing Test Application").useSyntheticInput(false));
+    }
+
+    @Test
+    public void typeSpecialCharsWithSyntheticInput() throws Exception
+    {
+        typeSpecialChars(GcUtilsSwing.window("GUICheckSwing Test Application").useSyntheticInput(true));
+    }
+
+    @Test
+    public void typeText() throws Exception
     {
         final GcWindowSwing l_wnd = GcUtilsSwing.window("GUICheckSwing Test Application");
         final GcJComponentSwing l_tf = l_wnd.component("TestTextField");
-        l_wnd.robot().focus(l_tf);
+        final JTextField l_field = (JTextField)l_tf.getComponent();
+        final AtomicInteger l_inserts = new AtomicInteger();
+        final AtomicInteger l_actions = new AtomicInteger();
+        final DocumentListener l_documentListener = new DocumentListener()
+        {
+            @Override
+            public void insertUpdate(DocumentEvent e)
+            {
+                l_inserts.incrementAndGet();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e)
+            {
+                // Only insertions are counted
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e)
+            {
+                // Only insertions are counted
+            }
+        };
+        final ActionListener l_actionListener = new ActionListener()
+        {
+            @Override
+            public void actionPerformed(ActionEvent e)
+            {
+                l_actions.incrementAndGet();
+            }
+        };
+
+        SwingUtilities.invokeAndWait(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                l_field.setText("");
+                l_field.getDocument().addDocumentListener(l_documentListener);
+                l_field.addActionListener(l_actionListener);
+            }
+        });
+        try
+        {
+            l_wnd.robot().focus(l_tf);
+
+            // Tab and Enter go to the key bindings, the text field only inserts the other characters one by one
+            l_wnd.robot().typeText("ab\tc\nd");
+            l_tf.propertyIs("text", "abcd");
+            Assert.assertEquals(4, l_inserts.get());
+            Assert.assertEquals(1, l_actions.get());
+        }
+        finally
+        {
+            SwingUtilities.invokeAndWait(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    l_field.getDocument().removeDocumentListener(l_documentListener);
+                    l_field.removeActionListener(l_actionListener);
+                }
+            });
+        }
+    }
+
+    private void typeSpecialChars(GcWindowSwing wnd) throws Exception
+    {
+        final GcJComponentSwing l_tf = wnd.component("TestTextField");
+        SwingUtilities.invokeAndWait(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                ((JTextField)l_tf.getComponent()).setText("");
+            }
+        });
+        wnd.robot().focus(l_tf);
         
-        l_wnd.robot().keyType("@");
+        wnd.robot().keyType("@");
         l_tf.propertyIs("text", "@");
     }
 }
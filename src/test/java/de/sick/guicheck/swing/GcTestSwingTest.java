@@ -0,0 +1,52 @@
+// Copyright 2014 SICK AG. All rights reserved.
+package de.sick.guicheck.swing;
+
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.SwingUtilities;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * @author agent (created)
+ */
+public class GcTestSwingTest extends GcTestSwing
+{
+    public static void main(String[] args)
+    {
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                final JFrame f = new JFrame("GcTestSwing Test Application");
+                f.add(new JLabel("Started"));
+                f.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+                f.pack();
+                f.setVisible(true);
+            }
+        });
+    }
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+        startApp(GcTestSwingTest.class.getName());
+    }
+
+    @Test
+    public void startAppReturnsWhenTheFirstWindowIsOpen()
+    {
+        Assert.assertTrue(getTimeToFirstWindow() >= 0);
+        Assert.assertNotNull(GcUtilsSwing.getWindowRaw("GcTestSwing Test Application"));
+    }
+
+    @Test
+    public void windowIsFoundByTitle()
+    {
+        Assert.assertNotNull(window("GcTestSwing Test Application"));
+        Assert.assertNotNull(window("GcTestSwing Test Application", 10, 0));
+    }
+}